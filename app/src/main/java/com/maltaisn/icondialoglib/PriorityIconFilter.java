@@ -30,15 +30,8 @@ public class PriorityIconFilter extends IconFilter {
     private static final int CUSTOM_CATEGORY_ID = 100;
 
     @Override
-    public int compare(Icon icon1, Icon icon2) {
-        int categoryId1 = icon1.getCategory().getId();
-        int categoryId2 = icon2.getCategory().getId();
-        if (categoryId1 == CUSTOM_CATEGORY_ID && categoryId2 != CUSTOM_CATEGORY_ID) {
-            return -1;
-        } else if (categoryId1 != CUSTOM_CATEGORY_ID && categoryId2 == CUSTOM_CATEGORY_ID) {
-            return 1;
-        } else {
-            return super.compare(icon1, icon2);
-        }
+    protected long getSortKey(Icon icon) {
+        // Show icons of the custom category first, others are sorted as usual
+        return (icon.getCategory().getId() == CUSTOM_CATEGORY_ID ? 0 : 1);
     }
 }
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2018 Nicolas Maltais
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.maltaisn.icondialog;
+
+
+/**
+ * Text functions used by icon-catalog.gradle to compile label values at build time,
+ * so that they are normalized exactly like search terms at runtime.
+ */
+public final class CatalogText {
+
+    private static final String TAG = CatalogText.class.getSimpleName();
+
+    private CatalogText() {
+        // No instances
+    }
+
+    /**
+     * Normalize a label value
+     * @param text label value
+     * @return the normalized value
+     * @see TextNormalizer#normalize(String)
+     */
+    public static String normalize(String text) {
+        return TextNormalizer.normalize(text);
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2018 Nicolas Maltais
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.maltaisn.icondialog;
+
+
+import java.awt.geom.Path2D;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Conversion of icon path data to Java2D paths, used by icon-sprites.gradle to rasterize
+ * sprites at build time. Path data is parsed with the same {@link PathParser} as at runtime.
+ */
+public final class SpritePaths {
+
+    private static final String TAG = SpritePaths.class.getSimpleName();
+
+    private SpritePaths() {
+        // No instances
+    }
+
+    /**
+     * Parse path data to a path
+     * @param pathData SVG path data of an icon
+     * @return the path, in viewport coordinates
+     * @throws IllegalArgumentException if path data is invalid
+     */
+    public static Path2D parse(String pathData) {
+        byte[] bytes = pathData.getBytes(StandardCharsets.US_ASCII);
+        PathData data = PathParser.parse(bytes, 0, bytes.length);
+
+        Path2D.Float path = new Path2D.Float(Path2D.WIND_NON_ZERO);
+        float[] c = data.coords;
+        int i = 0;
+        try {
+            for (byte op : data.ops) {
+                switch (op) {
+                    case PathData.OP_MOVE:
+                        path.moveTo(c[i], c[i + 1]);
+                        i += 2;
+                        break;
+                    case PathData.OP_LINE:
+                        path.lineTo(c[i], c[i + 1]);
+                        i += 2;
+                        break;
+                    case PathData.OP_CUBIC:
+                        path.curveTo(c[i], c[i + 1], c[i + 2], c[i + 3], c[i + 4], c[i + 5]);
+                        i += 6;
+                        break;
+                    case PathData.OP_QUAD:
+                        path.quadTo(c[i], c[i + 1], c[i + 2], c[i + 3]);
+                        i += 4;
+                        break;
+                    case PathData.OP_CLOSE:
+                        path.closePath();
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Invalid path opcode " + op + ".");
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Path data has too few coordinates.");
+        }
+        return path;
+    }
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2018 Nicolas Maltais
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.maltaisn.icondialog;
+
+
+import android.app.Instrumentation;
+import android.content.Context;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.widget.RecyclerView;
+import android.view.ContextThemeWrapper;
+import android.widget.FrameLayout;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Check that binding an icon view holder to the icon it's already bound to creates no objects
+ */
+@RunWith(AndroidJUnit4.class)
+public class IconBindAllocationTest {
+
+    private static final int WARMUP_BINDS = 10;
+    private static final int COUNTED_BINDS = 1000;
+    private static final long LIST_TIMEOUT = 10000;
+
+    private Instrumentation instrumentation;
+    private Context context;
+
+    @Before
+    public void setUp() {
+        instrumentation = InstrumentationRegistry.getInstrumentation();
+        context = new ContextThemeWrapper(InstrumentationRegistry.getTargetContext(),
+                R.style.Theme_AppCompat_Light_Dialog);
+
+        // Load icons before dialog is created so that the list is created immediately
+        IconHelper.getInstance(context);
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void rebindCreatesNoObjects() {
+        final IconDialog dialog = new IconDialog();
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                dialog.prewarm(context);
+            }
+        });
+        final RecyclerView.Adapter<RecyclerView.ViewHolder> adapter = waitForList(dialog);
+
+        final int[] allocCount = new int[1];
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                int position = 0;
+                while (adapter.getItemViewType(position) != IconListModel.TYPE_ICON) {
+                    position++;
+                }
+
+                FrameLayout parent = new FrameLayout(new ContextThemeWrapper(context, R.style.IcdStyle));
+                RecyclerView.ViewHolder holder = adapter.createViewHolder(parent, IconListModel.TYPE_ICON);
+
+                // First binds set the drawable and initialize the view
+                for (int i = 0; i < WARMUP_BINDS; i++) {
+                    adapter.onBindViewHolder(holder, position);
+                }
+
+                Debug.startAllocCounting();
+                Debug.resetThreadAllocCount();
+                for (int i = 0; i < COUNTED_BINDS; i++) {
+                    adapter.onBindViewHolder(holder, position);
+                }
+                allocCount[0] = Debug.getThreadAllocCount();
+                Debug.stopAllocCounting();
+            }
+        });
+
+        assertEquals("Objects were created when rebinding icon.", 0, allocCount[0]);
+    }
+
+    /**
+     * Wait until the initial icon list of a dialog is created
+     * @param dialog the dialog
+     * @return the adapter of the icon list
+     */
+    private RecyclerView.Adapter<RecyclerView.ViewHolder> waitForList(final IconDialog dialog) {
+        final AtomicReference<RecyclerView.Adapter<RecyclerView.ViewHolder>> adapter = new AtomicReference<>();
+        long end = SystemClock.uptimeMillis() + LIST_TIMEOUT;
+        while (SystemClock.uptimeMillis() < end) {
+            instrumentation.runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    RecyclerView.Adapter<RecyclerView.ViewHolder> a = dialog.getIconAdapter();
+                    if (a != null && a.getItemCount() > 0) {
+                        adapter.set(a);
+                    }
+                }
+            });
+            if (adapter.get() != null) {
+                return adapter.get();
+            }
+            SystemClock.sleep(50);
+        }
+        fail("Icon list wasn't created.");
+        return null;
+    }
+
+}
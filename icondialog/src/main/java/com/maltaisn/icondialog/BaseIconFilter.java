@@ -27,7 +27,9 @@ import android.support.annotation.Nullable;
 import android.util.SparseArray;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 
@@ -47,6 +49,17 @@ public abstract class BaseIconFilter implements Comparator<Icon> {
     private @Nullable BitSet disabledCategories;
     private @Nullable BitSet disabledIcons;
 
+    // Snapshot of enabled icons sorted by ID, and data it was computed for
+    private @Nullable List<Icon> enabledIcons;
+    private @Nullable BitSet enabledIconIds;
+    private @Nullable IconHelper enabledIconsHelper;
+    private int enabledIconsDataVersion;
+
+    // Rank of each icon in display order indexed by icon ID, and data it was computed for
+    private @Nullable int[] sortRanks;
+    private @Nullable IconHelper sortRanksHelper;
+    private int sortRanksDataVersion;
+
 
     public BaseIconFilter() {
         iconHelper = null;
@@ -64,28 +77,164 @@ public abstract class BaseIconFilter implements Comparator<Icon> {
      */
     @CallSuper
     public List<Icon> getIconsForSearch(@Nullable String search) {
+        return new ArrayList<>(getEnabledIcons());
+    }
+
+    /**
+     * Get all enabled icons. The list is created once and kept until disabled
+     * categories or icons are changed, or until icons change.
+     * @return the unmodifiable list of enabled icons, sorted by icon ID
+     */
+    protected final List<Icon> getEnabledIcons() {
+        updateEnabledIcons();
+        //noinspection ConstantConditions
+        return enabledIcons;
+    }
+
+    /**
+     * Get the ID of all enabled icons. Must not be modified.
+     * @see #getEnabledIcons()
+     */
+    protected final BitSet getEnabledIconIds() {
+        updateEnabledIcons();
+        //noinspection ConstantConditions
+        return enabledIconIds;
+    }
+
+    /**
+     * Create the snapshot of enabled icons if it's not valid anymore
+     */
+    private synchronized void updateEnabledIcons() {
         if (iconHelper == null) {
             throw new IllegalStateException("Icon helper was not set for icon filter.");
         }
+        if (enabledIcons != null && enabledIconsHelper == iconHelper
+                && enabledIconsDataVersion == iconHelper.getDataVersion()) {
+            return;
+        }
+        enabledIconsHelper = iconHelper;
+        enabledIconsDataVersion = iconHelper.getDataVersion();
 
-        // Get all enabled icons
         SparseArray<Icon> allIcons = iconHelper.getIcons();
-        List<Icon> enabledIcons = new ArrayList<>();
+        List<Icon> icons = new ArrayList<>(allIcons.size());
+        BitSet ids = new BitSet();
         for (int i = 0; i < allIcons.size(); i++) {
             Icon icon = allIcons.valueAt(i);
             if ((disabledCategories == null || !disabledCategories.get(icon.category.id)) &&
                     (disabledIcons == null || !disabledIcons.get(icon.id))) {
                 // Icon's category is shown and icon is enabled
-                enabledIcons.add(icon);
+                icons.add(icon);
+                ids.set(icon.id);
             }
         }
 
-        return enabledIcons;
+        enabledIcons = Collections.unmodifiableList(icons);
+        enabledIconIds = ids;
+    }
+
+    private synchronized void invalidateEnabledIcons() {
+        enabledIcons = null;
+        enabledIconIds = null;
+    }
+
+    /**
+     * Sort icons in the order they are shown in the list. The rank of all icons is computed
+     * once with {@link #getSortKey(Icon)} and {@link #compare(Icon, Icon)}, so sorting a search
+     * result only sorts integers. Ranks are computed again if icons or labels change, or if
+     * {@link #invalidateSortKeys()} is called.
+     * @param icons icons to sort, list is sorted in place
+     */
+    public void sortIcons(List<Icon> icons) {
+        int[] ranks = getSortRanks();
+
+        // Sort rank and index of icons packed together
+        int count = icons.size();
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            int id = icons.get(i).id;
+            long rank = (id < ranks.length ? ranks[id] : Integer.MAX_VALUE);
+            keys[i] = (rank << 32) | i;
+        }
+        Arrays.sort(keys);
+
+        Icon[] sorted = new Icon[count];
+        for (int i = 0; i < count; i++) {
+            sorted[i] = icons.get((int) keys[i]);
+        }
+        for (int i = 0; i < count; i++) {
+            icons.set(i, sorted[i]);
+        }
+    }
+
+    /**
+     * Get the rank of all icons, computing them if icons changed since last time
+     */
+    private synchronized int[] getSortRanks() {
+        if (sortRanks != null && sortRanksHelper == iconHelper
+                && sortRanksDataVersion == iconHelper.getDataVersion()) {
+            return sortRanks;
+        }
+        sortRanksHelper = iconHelper;
+        sortRanksDataVersion = iconHelper.getDataVersion();
+
+        SparseArray<Icon> allIcons = iconHelper.getIcons();
+        List<Icon> icons = new ArrayList<>(allIcons.size());
+        int maxId = -1;
+        for (int i = 0; i < allIcons.size(); i++) {
+            Icon icon = allIcons.valueAt(i);
+            icons.add(icon);
+            maxId = Math.max(maxId, icon.id);
+        }
+
+        // Get sort keys of all icons, then sort them once by key and with comparator
+        final long[] sortKeys = new long[maxId + 1];
+        for (Icon icon : icons) {
+            sortKeys[icon.id] = getSortKey(icon);
+        }
+        Collections.sort(icons, new Comparator<Icon>() {
+            @Override
+            public int compare(Icon icon1, Icon icon2) {
+                int result = Long.compare(sortKeys[icon1.id], sortKeys[icon2.id]);
+                if (result == 0) {
+                    result = BaseIconFilter.this.compare(icon1, icon2);
+                }
+                return result;
+            }
+        });
+
+        int[] ranks = new int[maxId + 1];
+        for (int i = 0; i < icons.size(); i++) {
+            ranks[icons.get(i).id] = i;
+        }
+        sortRanks = ranks;
+        return ranks;
+    }
+
+    /**
+     * Clear the cached rank of icons. Must be called if any setting affecting
+     * {@link #getSortKey(Icon)} or {@link #compare(Icon, Icon)} is changed.
+     */
+    protected synchronized void invalidateSortKeys() {
+        sortRanks = null;
+    }
+
+    /**
+     * Get the sort key of an icon. Icons with a lower key are shown first, icons with the same
+     * key are sorted with {@link #compare(Icon, Icon)}. Keys are computed once for all icons,
+     * so overriding this is the cheapest way to customize the order of icons.
+     * All icons of a same category MUST be grouped together if headers are shown.
+     * By default, all icons have the same key.
+     * @param icon the icon
+     * @return the sort key
+     */
+    protected long getSortKey(Icon icon) {
+        return 0;
     }
 
     /**
      * Compare two icons. All icons of a same categories MUST be grouped together if headers of
      * the icon list are shown, or undefined behavior will happen.
+     * This is only used to compute the rank of icons, see {@link #sortIcons(List)}.
      * By default, icons are sorted by category, then by labels, then by ID
      * @param icon1 first icon
      * @param icon2 second icon
@@ -128,6 +277,7 @@ public abstract class BaseIconFilter implements Comparator<Icon> {
                 disabledCategories.set(id);
             }
         }
+        invalidateEnabledIcons();
         return this;
     }
 
@@ -145,6 +295,7 @@ public abstract class BaseIconFilter implements Comparator<Icon> {
                 disabledIcons.set(id);
             }
         }
+        invalidateEnabledIcons();
         return this;
     }
 
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2018 Nicolas Maltais
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.maltaisn.icondialog;
+
+
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
+import android.graphics.drawable.Drawable;
+import android.util.LruCache;
+
+/**
+ * LRU cache of icon drawables keyed by icon ID, bounded by an estimated size in bytes.
+ * Cache is trimmed when the system is low on memory.
+ */
+class DrawableCache extends LruCache<Integer, Drawable> implements ComponentCallbacks2 {
+
+    private static final String TAG = DrawableCache.class.getSimpleName();
+
+    // Estimated size of the objects of a drawable other than its path
+    private static final int DRAWABLE_BASE_SIZE = 512;
+
+    /**
+     * Create a new drawable cache
+     * @param maxSize maximum estimated size of the cached drawables in bytes
+     */
+    DrawableCache(int maxSize) {
+        super(maxSize);
+    }
+
+    /**
+     * Get the default maximum size of the cache, an eighth of the maximum heap size
+     */
+    static int getDefaultMaxSize() {
+        return (int) Math.min(Runtime.getRuntime().maxMemory() / 8, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Estimate the memory used by a drawable. Cached icon drawables only hold their path
+     * in viewport coordinates, drawables shown are transformed to their bounds. The unavailable
+     * icon drawable is a shared resource.
+     */
+    @Override
+    protected int sizeOf(Integer id, Drawable drawable) {
+        if (drawable instanceof IconDrawable) {
+            return ((IconDrawable) drawable).getPathByteCount() + DRAWABLE_BASE_SIZE;
+        }
+        return DRAWABLE_BASE_SIZE;
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_BACKGROUND) {
+            // App is in background, drawables are not needed
+            evictAll();
+        } else if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            // UI is hidden or system is running low on memory, keep the most recent half
+            trimToSize(maxSize() / 2);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        evictAll();
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+        // Not used
+    }
+
+}
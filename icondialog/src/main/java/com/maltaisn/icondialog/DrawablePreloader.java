@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2018 Nicolas Maltais
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.maltaisn.icondialog;
+
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads icon drawables into the drawable cache with a small pool of threads.
+ * Icons requested for display are loaded first, most recent request first,
+ * then the rest of the icons that can be shown, in the order they are shown.
+ */
+class DrawablePreloader {
+
+    private static final String TAG = DrawablePreloader.class.getSimpleName();
+
+    private static final int PRIORITY_CATALOG = 0;
+
+    private static final int MAX_THREADS = 3;
+
+    private final IconHelper iconHelper;
+    private final DrawableCache drawableCache;
+    private final PathDataCache pathDataCache;
+    private final ThreadPoolExecutor executor;
+
+    private final AtomicInteger taskCount;
+    private int requestCount;
+    private volatile int catalogEvictionCount;
+
+    DrawablePreloader(IconHelper iconHelper, DrawableCache drawableCache, PathDataCache pathDataCache) {
+        this.iconHelper = iconHelper;
+        this.drawableCache = drawableCache;
+        this.pathDataCache = pathDataCache;
+
+        int threads = Math.max(1, Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors() - 1));
+        executor = new ThreadPoolExecutor(threads, threads, 10, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(@NonNull Runnable runnable) {
+                Thread thread = new Thread(runnable, "iconDrawablesLoader");
+                thread.setPriority(Thread.NORM_PRIORITY - 1);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+
+        taskCount = new AtomicInteger();
+    }
+
+    /**
+     * Load the drawables of many icons after any requested icons, replacing the icons
+     * passed previously. Loading stops when the drawable cache is full, that is when
+     * a drawable is evicted after loading has started.
+     * @param icons icons to load, in loading order
+     */
+    void preloadCatalog(List<Icon> icons) {
+        cancelCatalog();
+        catalogEvictionCount = drawableCache.evictionCount();
+        for (Icon icon : icons) {
+            executor.execute(new Task(icon, PRIORITY_CATALOG, null));
+        }
+    }
+
+    /**
+     * Cancel loading of icons passed to {@link #preloadCatalog(List)} not being loaded yet
+     */
+    private void cancelCatalog() {
+        Iterator<Runnable> it = executor.getQueue().iterator();
+        while (it.hasNext()) {
+            if (((Task) it.next()).priority == PRIORITY_CATALOG) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Load the drawables of icons before any other icons requested before.
+     * @param icons icons to load, in loading order
+     */
+    synchronized void preload(List<Icon> icons) {
+        requestCount++;
+        for (Icon icon : icons) {
+            executor.execute(new Task(icon, requestCount, null));
+        }
+    }
+
+    /**
+     * Load the drawables of icons before any other icons, and wait until they are loaded.
+     * @param icons icons to load, in loading order
+     * @throws InterruptedException if calling thread is interrupted while waiting
+     */
+    void preloadAndWait(List<Icon> icons) throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(icons.size());
+        synchronized (this) {
+            requestCount++;
+            for (Icon icon : icons) {
+                executor.execute(new Task(icon, requestCount, latch));
+            }
+        }
+        latch.await();
+    }
+
+    /**
+     * Cancel loading of all icons not being loaded yet
+     */
+    void cancel() {
+        List<Runnable> tasks = new ArrayList<>();
+        executor.getQueue().drainTo(tasks);
+        for (Runnable task : tasks) {
+            ((Task) task).finish();
+        }
+    }
+
+    private class Task implements Runnable, Comparable<Task> {
+
+        final Icon icon;
+        final int priority;
+        final int order;
+        final @Nullable CountDownLatch latch;
+
+        Task(Icon icon, int priority, @Nullable CountDownLatch latch) {
+            this.icon = icon;
+            this.priority = priority;
+            this.latch = latch;
+            order = taskCount.getAndIncrement();
+        }
+
+        @Override
+        public void run() {
+            try {
+                // Read the path data cache file on the first task rather than when helper is created
+                pathDataCache.load();
+
+                // Cache trims itself after each insertion so its size never exceeds the maximum,
+                // an eviction is the only sign that it's full
+                if (priority != PRIORITY_CATALOG || drawableCache.evictionCount() == catalogEvictionCount) {
+                    iconHelper.getIconDrawable(icon);
+                } else {
+                    // Cache is full, other icons wouldn't fit either
+                    cancelCatalog();
+                }
+            } finally {
+                finish();
+            }
+        }
+
+        void finish() {
+            if (latch != null) {
+                latch.countDown();
+            }
+        }
+
+        @Override
+        public int compareTo(@NonNull Task task) {
+            // Higher priority first, then in order of request
+            if (priority != task.priority) {
+                return Integer.compare(task.priority, priority);
+            }
+            return Integer.compare(order, task.order);
+        }
+    }
+
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2018 Nicolas Maltais
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.maltaisn.icondialog;
+
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+import android.util.SparseIntArray;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Icons rasterized at a fixed size into a few alpha-only sprite sheets, either
+ * at runtime or at build time.
+ * Since sheets only have an alpha channel, drawables are colored by their paint color
+ * and color filter, so tinting works the same as with path drawables.
+ */
+class IconAtlas {
+
+    private static final String TAG = IconAtlas.class.getSimpleName();
+
+    private static final int SHEET_SIZE = 1024;
+
+    final int iconSize;
+    private final int cellSize;
+    private final int cellsPerRow;
+    private final int cellsPerSheet;
+
+    private final List<Bitmap> sheets;
+    private final SparseIntArray cells;
+
+    private IconAtlas(int iconSize, int cellSize, int cellsPerRow, int cellsPerSheet) {
+        this.iconSize = iconSize;
+        this.cellSize = cellSize;
+        this.cellsPerRow = cellsPerRow;
+        this.cellsPerSheet = cellsPerSheet;
+
+        sheets = new ArrayList<>();
+        cells = new SparseIntArray();
+    }
+
+    /**
+     * Rasterize icons into sprite sheets
+     * @param icons icons to rasterize
+     * @param pathDataCache cache from which parsed path data is obtained
+     * @param iconSize size of icons in pixels
+     * @return the atlas
+     */
+    static IconAtlas rasterize(List<Icon> icons, PathDataCache pathDataCache, int iconSize) {
+        int cellsPerRow = Math.max(1, SHEET_SIZE / iconSize);
+        IconAtlas atlas = new IconAtlas(iconSize, iconSize, cellsPerRow, cellsPerRow * cellsPerRow);
+
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setStyle(Paint.Style.FILL);
+        paint.setColor(Color.BLACK);
+        float scale = iconSize / IconDrawable.VIEWPORT_SIZE;
+
+        Canvas canvas = new Canvas();
+        int cell = 0;
+        for (Icon icon : icons) {
+            if (Thread.currentThread().isInterrupted()) break;
+
+            Path path;
+            try {
+                path = IconDrawable.createPath(pathDataCache.get(icon));
+            } catch (IllegalArgumentException e) {
+                // Icon isn't drawable, it will use its own drawable
+                Log.e(TAG, "Could not rasterize icon " + icon.id, e);
+                continue;
+            }
+
+            int sheetIndex = cell / atlas.cellsPerSheet;
+            if (sheetIndex == atlas.sheets.size()) {
+                // Last sheet is full, add a new one only as big as needed
+                int remaining = Math.min(icons.size() - cell, atlas.cellsPerSheet);
+                int rows = (remaining + cellsPerRow - 1) / cellsPerRow;
+                int width = Math.min(remaining, cellsPerRow) * iconSize;
+                atlas.sheets.add(Bitmap.createBitmap(width, rows * iconSize, Bitmap.Config.ALPHA_8));
+                canvas.setBitmap(atlas.sheets.get(sheetIndex));
+            }
+
+            int index = cell % atlas.cellsPerSheet;
+            int saveCount = canvas.save();
+            canvas.translate((index % cellsPerRow) * iconSize, (index / cellsPerRow) * iconSize);
+            canvas.scale(scale, scale);
+            canvas.drawPath(path, paint);
+            canvas.restoreToCount(saveCount);
+
+            atlas.cells.put(icon.id, cell);
+            cell++;
+        }
+        canvas.setBitmap(null);
+
+        return atlas;
+    }
+
+    /**
+     * Load sprite sheets rasterized at build time. Sprites can be of any size,
+     * they are scaled to the icon size when drawn.
+     * @param bb buffer containing the sprites file, positioned after its header
+     * @param iconSize size of icons in pixels
+     * @return the atlas
+     * @throws IOException if sprites file is invalid
+     */
+    static IconAtlas load(ByteBuffer bb, int iconSize) throws IOException {
+        int cellSize = bb.getShort();
+        int cellsPerRow = bb.getShort();
+        int cellsPerSheet = bb.getInt();
+        IconAtlas atlas = new IconAtlas(iconSize, cellSize, cellsPerRow, cellsPerSheet);
+
+        int iconCount = bb.getInt();
+        for (int i = 0; i < iconCount; i++) {
+            atlas.cells.append(bb.getInt(), i);
+        }
+
+        int sheetCount = bb.getShort();
+        Inflater inflater = new Inflater();
+        try {
+            for (int i = 0; i < sheetCount; i++) {
+                int width = bb.getShort();
+                int height = bb.getShort();
+                int compressedLength = bb.getInt();
+
+                // Alpha values are inflated directly in the bitmap rows layout
+                Bitmap sheet = Bitmap.createBitmap(width, height, Bitmap.Config.ALPHA_8);
+                int rowBytes = sheet.getRowBytes();
+                byte[] pixels = new byte[rowBytes * height];
+                inflater.reset();
+                inflater.setInput(bb.array(), bb.position(), compressedLength);
+                for (int y = 0; y < height; y++) {
+                    int offset = y * rowBytes;
+                    int end = offset + width;
+                    while (offset < end) {
+                        int inflated = inflater.inflate(pixels, offset, end - offset);
+                        if (inflated == 0 && (inflater.finished() || inflater.needsInput())) {
+                            throw new IOException("Sprite sheet data is truncated.");
+                        }
+                        offset += inflated;
+                    }
+                }
+                sheet.copyPixelsFromBuffer(ByteBuffer.wrap(pixels));
+                atlas.sheets.add(sheet);
+                bb.position(bb.position() + compressedLength);
+            }
+        } catch (DataFormatException | RuntimeException e) {
+            throw new IOException("Invalid sprites file.", e);
+        } finally {
+            inflater.end();
+        }
+
+        return atlas;
+    }
+
+    /**
+     * Get a drawable for an icon in the atlas
+     * @param iconId ID of the icon
+     * @return the drawable, or null if icon isn't in the atlas
+     */
+    @Nullable Drawable getDrawable(int iconId) {
+        int cell = cells.get(iconId, -1);
+        if (cell == -1) return null;
+
+        int index = cell % cellsPerSheet;
+        int left = (index % cellsPerRow) * cellSize;
+        int top = (index / cellsPerRow) * cellSize;
+        return new AtlasDrawable(sheets.get(cell / cellsPerSheet),
+                new Rect(left, top, left + cellSize, top + cellSize), iconSize);
+    }
+
+    /**
+     * Drawable drawing a region of a sprite sheet
+     */
+    static class AtlasDrawable extends Drawable {
+
+        private final Bitmap sheet;
+        private final Rect region;
+        private final int size;
+        private final Paint paint;
+
+        AtlasDrawable(Bitmap sheet, Rect region, int size) {
+            this.sheet = sheet;
+            this.region = region;
+            this.size = size;
+            paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+            paint.setColor(Color.BLACK);
+        }
+
+        @Override
+        public void draw(@NonNull Canvas canvas) {
+            canvas.drawBitmap(sheet, region, getBounds(), paint);
+        }
+
+        @Override
+        public void setAlpha(int alpha) {
+            paint.setAlpha(alpha);
+            invalidateSelf();
+        }
+
+        @Override
+        public int getAlpha() {
+            return paint.getAlpha();
+        }
+
+        @Override
+        public void setColorFilter(@Nullable ColorFilter colorFilter) {
+            paint.setColorFilter(colorFilter);
+            invalidateSelf();
+        }
+
+        @Override
+        public @Nullable ColorFilter getColorFilter() {
+            return paint.getColorFilter();
+        }
+
+        @Override
+        public int getOpacity() {
+            return PixelFormat.TRANSLUCENT;
+        }
+
+        @Override
+        public int getIntrinsicWidth() {
+            return size;
+        }
+
+        @Override
+        public int getIntrinsicHeight() {
+            return size;
+        }
+    }
+
+}
@@ -26,16 +26,22 @@ import android.app.Dialog;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.content.res.TypedArray;
+import android.graphics.ColorFilter;
 import android.graphics.PorterDuff;
+import android.graphics.PorterDuffColorFilter;
 import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.Looper;
 import android.support.annotation.IntDef;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
 import android.support.v4.app.DialogFragment;
 import android.support.v7.widget.GridLayoutManager;
+import android.support.v7.util.DiffUtil;
 import android.support.v7.widget.RecyclerView;
 import android.text.Editable;
 import android.text.TextWatcher;
@@ -47,16 +53,21 @@ import android.view.ViewGroup;
 import android.widget.Button;
 import android.widget.EditText;
 import android.widget.ImageView;
+import android.widget.ProgressBar;
 import android.widget.TextView;
 
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 
 @SuppressWarnings({"unused", "WeakerAccess", "UnusedReturnValue", "SameParameterValue"})
@@ -80,16 +91,31 @@ public class IconDialog extends DialogFragment {
     // Delay after the last search character is typed when search is made
     private static final int SEARCH_DELAY = 250;
 
+    // Executor on which search and list creation is done, its thread stops when idle
+    private static final ExecutorService LIST_EXECUTOR = new ThreadPoolExecutor(0, 1,
+            10, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            Thread thread = new Thread(runnable, "iconDialogSearch");
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        }
+    });
+
     private Context context;
     private IconHelper iconHelper;
 
     private IconLayoutManager iconListLayout;
+    private @Nullable IconAdapter iconAdapter;
     private Button selectBtn;
     private Button clearBtn;
+    private ProgressBar loadingPrb;
+    private TextView noResultTxv;
 
     private int[] maxDialogDimensions;
     private int iconSize;
-    private int[] iconColors;
+    private int iconContentSize;
+    private ColorFilter[] iconColorFilters;
 
     private @SearchVisibility int searchVisibility;
     private @Nullable Locale searchLanguage;
@@ -102,14 +128,25 @@ public class IconDialog extends DialogFragment {
     private @Nullable String dialogTitle;
     private BaseIconFilter iconFilter;
     private boolean loadIconDrawables;
+    private boolean useIconAtlas;
 
-    private List<Item> listItems;
-    private List<Item> selectedItems;
+    private IconListModel listModel;
+    private IconSelection selection;
     private @Nullable int[] selectedIconsId;
     private String searchText;
 
     private boolean searchIgnoreDelay;
 
+    private final Handler mainHandler;
+    private @Nullable Future<?> listTask;
+    private int listTaskId;
+
+    // Whether the initial list wasn't shown yet, in which case the next list created does the
+    // work of the initial list, even if the initial list task was cancelled by a search.
+    private boolean initialListPending;
+
+    private @Nullable View prewarmedView;
+
     /**
      * Create a new icon dialog with default settings
      */
@@ -126,12 +163,15 @@ public class IconDialog extends DialogFragment {
         showSelectBtn = true;
         allowMultipleSelection = false;
         showClearBtn = false;
-        selectedItems = new ArrayList<>();
+        selection = new IconSelection();
         selectedIconsId = null;
 
         iconFilter = new IconFilter();
 
         loadIconDrawables = true;
+        useIconAtlas = false;
+
+        mainHandler = new Handler(Looper.getMainLooper());
     }
 
     @Override
@@ -139,10 +179,16 @@ public class IconDialog extends DialogFragment {
         super.onCreate(savedInstanceState);
         setRetainInstance(true);
 
-        iconHelper = IconHelper.getInstance(getActivity());
-
-        iconFilter.iconHelper = iconHelper;
+        if (prewarmedView == null) {
+            initialize();
+        }
+    }
 
+    /**
+     * Get style attributes and icon helper, loading it if necessary
+     */
+    @SuppressLint("InflateParams")
+    private void initialize() {
         // Get style attributes value
         TypedArray ta = context.obtainStyledAttributes(R.styleable.IconDialog);
         maxDialogDimensions = new int[]{
@@ -151,20 +197,135 @@ public class IconDialog extends DialogFragment {
         };
 
         iconSize = ta.getDimensionPixelSize(R.styleable.IconDialog_icdIconSize, -1);
-        iconColors = new int[]{
-                ta.getColor(R.styleable.IconDialog_icdIconColor, 0),
-                ta.getColor(R.styleable.IconDialog_icdSelectedIconColor, 0),
+        // Filters are shared by all icons so that none is created when binding
+        iconColorFilters = new ColorFilter[]{
+                new PorterDuffColorFilter(ta.getColor(R.styleable.IconDialog_icdIconColor, 0),
+                        PorterDuff.Mode.SRC_IN),
+                new PorterDuffColorFilter(ta.getColor(R.styleable.IconDialog_icdSelectedIconColor, 0),
+                        PorterDuff.Mode.SRC_IN),
         };
 
-        if (loadIconDrawables) {
-            iconHelper.loadIconDrawables();
+        ta.recycle();
+
+        // Icons are drawn inside the padding of the icon views, atlas is rasterized at that size
+        View iconView = LayoutInflater.from(context).inflate(R.layout.icd_item_icon, null, false);
+        iconContentSize = Math.max(1, iconSize - Math.max(
+                iconView.getPaddingLeft() + iconView.getPaddingRight(),
+                iconView.getPaddingTop() + iconView.getPaddingBottom()));
+
+        if (IconHelper.isInstanceLoaded()) {
+            setIconHelper(IconHelper.getInstance(context));
+        } else {
+            // Icons are loaded in background, dialog shows a loading state in the meantime
+            iconHelper = null;
+            IconHelper.loadInstance(context, new IconHelper.LoadCallback() {
+                @Override
+                public void onIconHelperLoaded(IconHelper helper) {
+                    setIconHelper(helper);
+                }
+            });
         }
+    }
 
-        ta.recycle();
+    private void setIconHelper(IconHelper helper) {
+        iconHelper = helper;
+        iconFilter.iconHelper = helper;
+
+        if (context == null) {
+            // Dialog was detached while loading
+            return;
+        }
+
+        if (iconAdapter != null) {
+            // Dialog was shown while loading, create the icon list
+            updateListItems(searchText, true);
+        }
+    }
+
+    /**
+     * Prepare the dialog before it's shown so that showing it only attaches views.
+     * The dialog view is inflated, the icon view holders are created, and the initial
+     * list is created and the drawables of its first icons are loaded in background.
+     * Must be called on the main thread after dialog is configured, with the context
+     * of the activity the dialog will be shown in. Does nothing if dialog is already shown.
+     * @param context activity context
+     * @return the dialog
+     */
+    public IconDialog prewarm(Context context) {
+        if (this.context != null) return this;
+
+        this.context = wrapContext(context);
+        initialize();
+
+        View view = createView(null);
+        RecyclerView iconListRcv = view.findViewById(R.id.rcv_icon_list);
+        RecyclerView.RecycledViewPool pool = iconListRcv.getRecycledViewPool();
+        //noinspection ConstantConditions
+        IconAdapter adapter = iconAdapter;
+
+        // Create enough icon view holders to fill the list. The adapter is already set
+        // on the list so the pool won't be cleared when it's attached.
+        int count = getPageSize();
+        pool.setMaxRecycledViews(IconListModel.TYPE_ICON, count);
+        for (int i = 0; i < count; i++) {
+            pool.putRecycledView(adapter.createViewHolder(iconListRcv, IconListModel.TYPE_ICON));
+        }
+
+        prewarmedView = view;
+        return this;
+    }
+
+    /**
+     * Get the adapter of the icon list, null if dialog view isn't created
+     */
+    @VisibleForTesting
+    @Nullable RecyclerView.Adapter<RecyclerView.ViewHolder> getIconAdapter() {
+        return iconAdapter;
     }
 
     @Override
     public @NonNull Dialog onCreateDialog(Bundle state) {
+        final View view;
+        if (prewarmedView != null) {
+            view = prewarmedView;
+            prewarmedView = null;
+        } else {
+            view = createView(state);
+        }
+
+        // Set up dialog
+        final Dialog dialog = new Dialog(context);
+        dialog.setOnShowListener(new DialogInterface.OnShowListener() {
+            @SuppressWarnings("ConstantConditions")
+            @Override
+            public void onShow(DialogInterface dialogInterface) {
+                // Get maximum dialog dimensions
+                Rect fgPadding = new Rect();
+                dialog.getWindow().getDecorView().getBackground().getPadding(fgPadding);
+                DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+                int height = metrics.heightPixels - fgPadding.top - fgPadding.bottom;
+                int width = metrics.widthPixels - fgPadding.top - fgPadding.bottom;
+
+                // Set dialog's dimensions
+                if (width > maxDialogDimensions[0]) width = maxDialogDimensions[0];
+                if (height > maxDialogDimensions[1]) height = maxDialogDimensions[1];
+                dialog.getWindow().setLayout(width, height);
+
+                // Set dialog's content
+                view.setLayoutParams(new ViewGroup.LayoutParams(width, height));
+                dialog.setContentView(view);
+            }
+        });
+
+        return dialog;
+    }
+
+    /**
+     * Inflate and set up the dialog view, and start creating the list if icons are loaded
+     * @param state saved state, null if there's none
+     * @return the dialog view
+     */
+    private View createView(@Nullable Bundle state) {
         LayoutInflater inflater = LayoutInflater.from(context);
         @SuppressLint("InflateParams")
         final View view = inflater.inflate(R.layout.icd_dialog_icon, null);
@@ -174,10 +335,11 @@ public class IconDialog extends DialogFragment {
         final ImageView searchImv = view.findViewById(R.id.imv_search);
         final ImageView cancelSearchImv = view.findViewById(R.id.imv_cancel_search);
         final RecyclerView iconListRcv = view.findViewById(R.id.rcv_icon_list);
-        final TextView noResultTxv = view.findViewById(R.id.txv_no_result);
         final Button cancelBtn = view.findViewById(R.id.btn_cancel);
         selectBtn = view.findViewById(R.id.btn_select);
         clearBtn = view.findViewById(R.id.btn_clear);
+        loadingPrb = view.findViewById(R.id.prb_loading);
+        noResultTxv = view.findViewById(R.id.txv_no_result);
 
         // Show search bar if necessary
         final boolean searchShown = isSearchAvailable();
@@ -211,12 +373,13 @@ public class IconDialog extends DialogFragment {
         // Set up icon recycler view layout and adapter
         final IconAdapter adapter = new IconAdapter();
         iconListRcv.setAdapter(adapter);
+        iconAdapter = adapter;
 
         iconListLayout = new IconLayoutManager(context, iconSize);
         iconListLayout.setSpanSizeLookup(new GridLayoutManager.SpanSizeLookup() {
             @Override
             public int getSpanSize(int position) {
-                if (position < listItems.size() && adapter.getItemViewType(position) == Item.TYPE_HEADER) {
+                if (position < listModel.size() && listModel.getItemType(position) == IconListModel.TYPE_HEADER) {
                     return iconListLayout.getSpanCount();
                 } else {
                     return 1;
@@ -224,6 +387,19 @@ public class IconDialog extends DialogFragment {
             }
         });
         iconListRcv.setLayoutManager(iconListLayout);
+        iconListRcv.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            private int lastFirstPos = RecyclerView.NO_POSITION;
+
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                // Preload next icons every time a new row is shown
+                int firstPos = iconListLayout.findFirstVisibleItemPosition();
+                if (dy != 0 && firstPos != lastFirstPos) {
+                    lastFirstPos = firstPos;
+                    preloadNextPage(dy > 0);
+                }
+            }
+        });
 
         if (stickyHeaders) {
             iconListRcv.addItemDecoration(new StickyHeaderDecoration(iconListRcv, adapter));
@@ -234,10 +410,11 @@ public class IconDialog extends DialogFragment {
         final Runnable searchRunnable = new Runnable() {
             @Override
             public void run() {
-                listItems = getListItems(searchEdt.getText().toString());
-                adapter.notifyDataSetChanged();
-
-                noResultTxv.setVisibility(listItems.size() > 0 ? View.GONE : View.VISIBLE);
+                if (iconHelper == null) {
+                    // Icons are still loading, search will be done when list is shown
+                    return;
+                }
+                updateListItems(searchEdt.getText().toString(), false);
             }
         };
         searchEdt.setText(searchText);
@@ -293,12 +470,13 @@ public class IconDialog extends DialogFragment {
             @Override
             public void onClick(View v) {
                 // Unselect all selected icons
-                int[] pos = getItemsPosition(selectedItems.toArray(new Item[selectedItems.size()]));
-                for (int p : pos) {
-                    listItems.get(p).isSelected = false;
-                    adapter.notifyItemChanged(p);
+                for (int id = selection.getFirst(); id != -1; id = selection.getNext(id)) {
+                    int pos = listModel.getIconPosition(id);
+                    if (pos != -1) {
+                        adapter.notifyItemChanged(pos);
+                    }
                 }
-                selectedItems.clear();
+                selection.clear();
 
                 clearBtn.setVisibility(View.GONE);
                 selectBtn.setEnabled(false);
@@ -312,14 +490,16 @@ public class IconDialog extends DialogFragment {
             view.findViewById(R.id.div_footer).setVisibility(View.GONE);
         }
 
-        if (state == null) {
-            listItems = getListItems(null);
-            if (selectedItems.size() > 0) {
-                int firstSelectedPos = getItemsPosition(selectedItems.get(0))[0];
-                iconListLayout.scrollToPositionWithOffset(firstSelectedPos, iconSize);
-                // Arbitrary offset just so list doesn't scroll right under sticky header
-            } else {
-                selectBtn.setEnabled(false);
+        if (iconHelper == null || state == null || listModel == null) {
+            // Show loading state until list is created in background
+            // If icons are not loaded yet, list is created when they are
+            listModel = IconListModel.EMPTY;
+            loadingPrb.setVisibility(View.VISIBLE);
+            selectBtn.setEnabled(false);
+            clearBtn.setVisibility(View.GONE);
+
+            if (iconHelper != null) {
+                updateListItems(searchText, true);
             }
 
         } else {
@@ -328,36 +508,12 @@ public class IconDialog extends DialogFragment {
             }
 
             iconListLayout.onRestoreInstanceState(state.getParcelable("listLayoutState"));
-        }
-
-        boolean showClear = showClearBtn && selectedItems.size() > 0;
-        clearBtn.setVisibility(showClear ? View.VISIBLE : View.GONE);
-
-        // Set up dialog
-        final Dialog dialog = new Dialog(context);
-        dialog.setOnShowListener(new DialogInterface.OnShowListener() {
-            @SuppressWarnings("ConstantConditions")
-            @Override
-            public void onShow(DialogInterface dialogInterface) {
-                // Get maximum dialog dimensions
-                Rect fgPadding = new Rect();
-                dialog.getWindow().getDecorView().getBackground().getPadding(fgPadding);
-                DisplayMetrics metrics = context.getResources().getDisplayMetrics();
-                int height = metrics.heightPixels - fgPadding.top - fgPadding.bottom;
-                int width = metrics.widthPixels - fgPadding.top - fgPadding.bottom;
-
-                // Set dialog's dimensions
-                if (width > maxDialogDimensions[0]) width = maxDialogDimensions[0];
-                if (height > maxDialogDimensions[1]) height = maxDialogDimensions[1];
-                dialog.getWindow().setLayout(width, height);
 
-                // Set dialog's content
-                view.setLayoutParams(new ViewGroup.LayoutParams(width, height));
-                dialog.setContentView(view);
-            }
-        });
+            boolean showClear = showClearBtn && !selection.isEmpty();
+            clearBtn.setVisibility(showClear ? View.VISIBLE : View.GONE);
+        }
 
-        return dialog;
+        return view;
     }
 
     @Override
@@ -369,6 +525,8 @@ public class IconDialog extends DialogFragment {
 
     @Override
     public void onDestroyView() {
+        iconAdapter = null;
+
         Dialog dialog = getDialog();
         // handles https://code.google.com/p/android/issues/detail?id=17423
         if (dialog != null && getRetainInstance()) {
@@ -381,11 +539,17 @@ public class IconDialog extends DialogFragment {
     public void onAttach(Context context) {
         super.onAttach(context);
 
-        // Wrap icon dialog's theme to context
+        this.context = wrapContext(context);
+    }
+
+    /**
+     * Wrap icon dialog's theme to a context
+     */
+    private static Context wrapContext(Context context) {
         TypedArray ta = context.obtainStyledAttributes(new int[]{R.attr.icdStyle});
         int style = ta.getResourceId(0, R.style.IcdStyle);
         ta.recycle();
-        this.context = new ContextThemeWrapper(context, style);
+        return new ContextThemeWrapper(context, style);
     }
 
     @Override
@@ -393,7 +557,9 @@ public class IconDialog extends DialogFragment {
         super.onDetach();
 
         context = null;
-        iconHelper.stopLoadingDrawables();
+        if (iconHelper != null) {
+            iconHelper.stopLoadingDrawables();
+        }
     }
 
     @Override
@@ -401,138 +567,356 @@ public class IconDialog extends DialogFragment {
         super.onDismiss(dialog);
 
         searchText = null;
-        selectedItems = new ArrayList<>();
+        selection.clear();
+
+        // Cancel search in progress
+        if (listTask != null) {
+            listTask.cancel(true);
+            listTask = null;
+        }
+        listTaskId++;
+        initialListPending = false;
     }
 
     private void callSelectCallback() {
-        try {
-            Icon[] icons = new Icon[selectedItems.size()];
+        // Caller is either a fragment or an activity.
+        // If callback interfaces are not implemented by caller, nothing is called.
+        Object caller = (getTargetFragment() != null ? getTargetFragment() : getActivity());
+        int[] iconIds = selection.toArray();
+
+        if (caller instanceof IdCallback) {
+            ((IdCallback) caller).onIconDialogIconIdsSelected(iconIds);
+        }
+        if (caller instanceof Callback) {
+            Icon[] icons = new Icon[iconIds.length];
             for (int i = 0; i < icons.length; i++) {
-                icons[i] = selectedItems.get(i).icon;
+                icons[i] = iconHelper.getIcon(iconIds[i]);
             }
+            ((Callback) caller).onIconDialogIconsSelected(icons);
+        }
+    }
 
-            if (getTargetFragment() != null) {
-                // Caller was a fragment
-                ((Callback) getTargetFragment()).onIconDialogIconsSelected(icons);
-            } else {
-                // Caller was an activity
-                //noinspection ConstantConditions
-                ((Callback) getActivity()).onIconDialogIconsSelected(icons);
+    /**
+     * Create the list items for a search on a background thread, then show them in the list.
+     * Any search in progress is cancelled and only the result of the last search is shown.
+     * @param search null to get whole list, or text to search among icon labels to filter icons
+     * @param initial whether this is the initial list, in which case list will be scrolled
+     *                to the first selected icon. If the initial list is cancelled by a search,
+     *                the search list is considered initial instead.
+     */
+    private void updateListItems(@Nullable final String search, boolean initial) {
+        if (listTask != null) {
+            listTask.cancel(true);
+        }
+        if (initial) {
+            initialListPending = true;
+        }
+        final boolean initialTask = initialListPending;
+
+        listTaskId++;
+        final int taskId = listTaskId;
+        final IconListModel oldModel = listModel;
+        final int pageSize = getPageSize();
+        final int[] scrollIconsId = initialTask ? getSelectedIconsId() : null;
+        listTask = LIST_EXECUTOR.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    createListItems(search, initialTask, taskId, oldModel, pageSize, scrollIconsId);
+                } catch (final RuntimeException e) {
+                    // Future returned by the executor is never read, rethrow on the main thread
+                    // so that an error in the filter isn't lost and the dialog isn't stuck loading.
+                    mainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            throw e;
+                        }
+                    });
+                }
             }
+        });
+    }
 
-        } catch (ClassCastException e) {
-            // Callback interface is not implemented by caller
+    /**
+     * Create the list items on the list executor thread, then post them to the main thread
+     * @see #updateListItems(String, boolean)
+     */
+    private void createListItems(@Nullable String search, final boolean initial, final int taskId,
+                                 @Nullable IconListModel oldModel, int pageSize,
+                                 @Nullable int[] scrollIconsId) {
+        final IconListModel model = createListModel(search);
+        if (initial) {
+            loadIconAtlas();
         }
+        try {
+            // Load drawables of the first icons shown so they aren't created when bound
+            preloadFirstPage(model, scrollIconsId, pageSize);
+        } catch (InterruptedException e) {
+            // Search was cancelled
+            return;
+        }
+        if (initial) {
+            preloadAllIcons(search, model);
+        }
+        final DiffUtil.DiffResult diff = (initial || oldModel == null) ? null :
+                DiffUtil.calculateDiff(new ItemDiffCallback(oldModel, model), false);
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (taskId == listTaskId) {
+                    // Result of the last search, show it
+                    listTask = null;
+                    if (initial) {
+                        initialListPending = false;
+                    }
+                    setListModel(model, diff, initial);
+                }
+            }
+        });
     }
 
     /**
-     * Get the list of icons matching search with category headers
-     * @param search null to get whole list, or text to search among icon labels to filter icons
-     * @return the list of items
+     * If atlas is used, start rasterizing all enabled icons into an atlas if not already done.
+     * List is updated when atlas is loaded.
      */
-    private List<Item> getListItems(@Nullable String search) {
-        // Get list of matching icons
-        List<Icon> matchingIcons = iconFilter.getIconsForSearch(search);
+    private void loadIconAtlas() {
+        if (!useIconAtlas || iconHelper == null || iconHelper.getIconAtlas(iconContentSize) != null) return;
 
-        // Set past or initial selection to new items
-        // while creating the item list
-        List<Item> items = new ArrayList<>(matchingIcons.size());
-        if (selectedIconsId != null && selectedIconsId.length > 0) {
-            // Set initial selection
-            if (!allowMultipleSelection && selectedIconsId.length > 1) {
-                selectedIconsId = new int[]{selectedIconsId[0]};
-            }
-
-            int selectedIndex = 0;
-            for (Icon icon : matchingIcons) {
-                Item item = new Item(icon);
-                items.add(item);
-                if (selectedIndex < selectedIconsId.length && icon.id >= selectedIconsId[selectedIndex]) {
-                    if (icon.id == selectedIconsId[selectedIndex]) {
-                        item.isSelected = true;
-                        selectedItems.add(item);
-                    }
-                    selectedIndex++;
+        iconHelper.loadIconAtlas(iconFilter.getIconsForSearch(null), iconContentSize, new Runnable() {
+            @Override
+            public void run() {
+                if (iconAdapter != null) {
+                    iconAdapter.notifyItemRangeChanged(0, listModel.size());
                 }
             }
-            selectedIconsId = null;
+        });
+    }
 
+    /**
+     * Load the drawables of the icons shown when the list is first displayed
+     * @param model list model
+     * @param scrollIconsId ID of the selected icons. List is scrolled to the first one shown.
+     *                      Can be null to start at the top of the list.
+     * @param pageSize number of items shown at once
+     * @throws InterruptedException if list creation is cancelled
+     */
+    private void preloadFirstPage(IconListModel model, @Nullable int[] scrollIconsId, int pageSize)
+            throws InterruptedException {
+        if (iconHelper == null || !loadIconDrawables) return;
+
+        int size = model.size();
+        int start = size;
+        if (scrollIconsId != null) {
+            for (int id : scrollIconsId) {
+                int pos = model.getIconPosition(id);
+                if (pos != -1 && pos < start) {
+                    start = pos;
+                }
+            }
+        }
+        if (start == size) {
+            start = 0;
+        }
+
+        int end = Math.min(size, start + pageSize);
+        List<Icon> icons = new ArrayList<>(end - start);
+        for (int i = start; i < end; i++) {
+            if (model.getItemType(i) == IconListModel.TYPE_ICON) {
+                icons.add(model.getIcon(i));
+            }
+        }
+        iconHelper.preloadIconDrawablesAndWait(icons);
+    }
+
+    /**
+     * Load the drawables of all icons that can be shown, in the order they are shown,
+     * until the drawable cache is full. Icons hidden by the filter are not loaded.
+     * @param search search of the list model
+     * @param model list model
+     */
+    private void preloadAllIcons(@Nullable String search, IconListModel model) {
+        if (iconHelper == null || !loadIconDrawables) return;
+
+        List<Icon> icons;
+        if (search == null) {
+            // List model already has all icons in order
+            icons = model.icons;
         } else {
-            // Set past selection in new item list
-            int selectedIndex = 0;
-            Collections.sort(selectedItems, new Comparator<Item>() {
-                @Override
-                public int compare(Item i1, Item i2) {
-                    return Integer.compare(i1.icon.id, i2.icon.id);
+            icons = iconFilter.getIconsForSearch(null);
+            iconFilter.sortIcons(icons);
+        }
+        iconHelper.loadIconDrawables(icons);
+    }
+
+    /**
+     * Load the drawables of the page of icons after the visible icons in scroll direction
+     * @param down true if list is scrolling down
+     */
+    private void preloadNextPage(boolean down) {
+        int first = iconListLayout.findFirstVisibleItemPosition();
+        int last = iconListLayout.findLastVisibleItemPosition();
+        if (iconHelper == null || !loadIconDrawables || first == RecyclerView.NO_POSITION) return;
+
+        // Visible icons are already bound, load the next ones, nearest first
+        int pageSize = last - first + 1;
+        List<Icon> icons = new ArrayList<>(pageSize);
+        if (down) {
+            int end = Math.min(listModel.size(), last + 1 + pageSize);
+            for (int i = last + 1; i < end; i++) {
+                if (listModel.getItemType(i) == IconListModel.TYPE_ICON) {
+                    icons.add(listModel.getIcon(i));
                 }
-            });
-            List<Item> newSel = new ArrayList<>(selectedItems);
-            for (Icon icon : matchingIcons) {
-                Item item = new Item(icon);
-                items.add(item);
-                for (int i = 0; i < selectedItems.size(); i++) {
-                    Icon selIcon = selectedItems.get(i).icon;
-                    if (selIcon.id >= icon.id) {
-                        if (selIcon.id == icon.id) {
-                            item.isSelected = true;
-                            newSel.set(i, item);
-                        }
-                        break;
-                    }
+            }
+        } else {
+            int start = Math.max(0, first - pageSize);
+            for (int i = first - 1; i >= start; i--) {
+                if (listModel.getItemType(i) == IconListModel.TYPE_ICON) {
+                    icons.add(listModel.getIcon(i));
                 }
             }
-            selectedItems = newSel;
         }
+        iconHelper.preloadIconDrawables(icons);
+    }
 
-        // Sort the icons
-        Collections.sort(items, new Comparator<Item>() {
-            @Override
-            public int compare(Item i1, Item i2) {
-                return iconFilter.compare(i1.icon, i2.icon);
+    /**
+     * Get the approximate number of items shown at once in the list. If list isn't laid out yet,
+     * it's estimated from the maximum dialog dimensions.
+     */
+    private int getPageSize() {
+        int width = iconListLayout.getWidth();
+        int height = iconListLayout.getHeight();
+        if (width == 0 || height == 0) {
+            DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+            width = Math.min(metrics.widthPixels, maxDialogDimensions[0]);
+            height = Math.min(metrics.heightPixels, maxDialogDimensions[1]);
+        }
+        return Math.max(1, width / iconSize) * (height / iconSize + 1);
+    }
+
+    /**
+     * Get the ID of the selected icons, sorted, or null if there are none
+     */
+    private @Nullable int[] getSelectedIconsId() {
+        if (selectedIconsId != null && selectedIconsId.length > 0) {
+            if (!allowMultipleSelection) {
+                return new int[]{selectedIconsId[0]};
             }
-        });
+            return selectedIconsId.clone();
+        } else if (!selection.isEmpty()) {
+            return selection.toArray();
+        }
+        return null;
+    }
+
+    /**
+     * Set the list model after it was created and update the list
+     * @param model new list model
+     * @param diff difference between the old and new list, or null to update the whole list
+     * @param initial whether this is the initial list
+     */
+    private void setListModel(IconListModel model, @Nullable DiffUtil.DiffResult diff, boolean initial) {
+        setInitialSelection(model);
+        listModel = model;
+
+        if (iconAdapter == null) {
+            // Dialog view was destroyed
+            return;
+        }
 
-        // Add headers to list
-        if (showHeaders && items.size() > 0) {
-            int i = 1;
-            Category firstCatg = items.get(0).icon.category;
-            items.add(0, new Item(firstCatg));
-            while (i < items.size() - 1) {
-                Category c1 = items.get(i).icon.category;
-                Category c2 = items.get(i + 1).icon.category;
-                if (c1.id != c2.id) {
-                    i++;
-                    items.add(i, new Item(c2));
+        if (diff != null) {
+            // Only notify of items that were added or removed
+            diff.dispatchUpdatesTo(iconAdapter);
+        } else {
+            iconAdapter.notifyDataSetChanged();
+        }
+        loadingPrb.setVisibility(View.GONE);
+        noResultTxv.setVisibility(listModel.size() > 0 ? View.GONE : View.VISIBLE);
+
+        // Initial selection may have been set
+        updateSelectionButtons();
+
+        if (initial) {
+            // Scroll to the first selected icon in the list
+            int firstSelectedPos = listModel.size();
+            for (int id = selection.getFirst(); id != -1; id = selection.getNext(id)) {
+                int pos = listModel.getIconPosition(id);
+                if (pos != -1 && pos < firstSelectedPos) {
+                    firstSelectedPos = pos;
                 }
-                i++;
+            }
+            if (firstSelectedPos < listModel.size()) {
+                iconListLayout.scrollToPositionWithOffset(firstSelectedPos, iconSize);
+                // Arbitrary offset just so list doesn't scroll right under sticky header
             }
         }
+    }
+
+    /**
+     * Get the list model of icons matching search with category headers.
+     * This is called on a background thread and must not change selection.
+     * @param search null to get whole list, or text to search among icon labels to filter icons
+     * @return the list model
+     */
+    private IconListModel createListModel(@Nullable String search) {
+        // Get list of matching icons and sort them, list returned by filter is a copy
+        List<Icon> icons = iconFilter.getIconsForSearch(search);
+        iconFilter.sortIcons(icons);
 
-        return items;
+        return IconListModel.build(icons, showHeaders);
     }
 
     /**
-     * Get the position of items in the adapter
-     * @param items array of icon items (varargs)
-     * @return the array of positions
+     * Set initial selection if there is one. Only icons in the list can be selected.
+     * Past selection is kept by icon ID so it doesn't need to be set to new list items.
+     * @param model new list model
      */
-    private int[] getItemsPosition(Item... items) {
-        int[] pos = new int[items.length];
-        int itemsLeft = items.length;
-        for (int i = 0; i < listItems.size(); i++) {
-            Item item = listItems.get(i);
-            if (item.type == Item.TYPE_ICON) {
-                for (int j = 0; j < items.length; j++) {
-                    if (item.icon == items[j].icon) {
-                        pos[j] = i;
-                        itemsLeft--;
-                        break;
-                    }
+    private void setInitialSelection(IconListModel model) {
+        if (selectedIconsId == null) return;
+
+        for (int id : selectedIconsId) {
+            if (model.getIconPosition(id) != -1) {
+                selection.setSelected(id, true);
+                if (!allowMultipleSelection) break;
+            }
+        }
+        selectedIconsId = null;
+    }
+
+    /**
+     * Select all icons in a range of the list, or unselect them if they are all selected.
+     * Headers and unavailable icons in the range are ignored.
+     * @param start first position, inclusive
+     * @param end last position, exclusive
+     */
+    private void toggleRangeSelection(int start, int end) {
+        boolean allSelected = true;
+        for (int i = start; i < end; i++) {
+            if (listModel.getItemType(i) == IconListModel.TYPE_ICON) {
+                Icon icon = listModel.getIcon(i);
+                if (!icon.noDrawable && !selection.isSelected(icon.id)) {
+                    allSelected = false;
+                    break;
+                }
+            }
+        }
+        for (int i = start; i < end; i++) {
+            if (listModel.getItemType(i) == IconListModel.TYPE_ICON) {
+                Icon icon = listModel.getIcon(i);
+                if (!icon.noDrawable) {
+                    selection.setSelected(icon.id, !allSelected);
                 }
             }
-            if (itemsLeft == 0) break;
         }
-        return pos;
+
+        if (iconAdapter != null) {
+            iconAdapter.notifyItemRangeChanged(start, end - start);
+        }
+        updateSelectionButtons();
+    }
+
+    private void updateSelectionButtons() {
+        selectBtn.setEnabled(!selection.isEmpty());
+        clearBtn.setVisibility(showClearBtn && !selection.isEmpty() ? View.VISIBLE : View.GONE);
     }
 
     /**
@@ -664,6 +1048,7 @@ public class IconDialog extends DialogFragment {
 
     /**
      * Set if dialog allows multiple selection
+     * If allowed, clicking a category header selects all its icons in the list.
      * By default, it is not allowed
      * @param allow whether to allow it or not
      * @return the dialog
@@ -715,11 +1100,13 @@ public class IconDialog extends DialogFragment {
 
 
     /**
-     * Set whether all icon drawables will be preloaded when dialog is shown to allow a smoother
-     * scrolling in the icon list. By default, drawables are preloaded.
+     * Set whether icon drawables will be preloaded when dialog is shown to allow a smoother
+     * scrolling in the icon list. Icons shown first and icons about to be scrolled to are
+     * loaded before the others. Only icons enabled by the icon filter are loaded, in the order
+     * they are shown, until the drawable cache is full. By default, drawables are preloaded.
      * @param load whether to load them or not
      * @return the dialog
-     * @see IconHelper#loadIconDrawables()
+     * @see IconHelper#setDrawableCacheMaxSize(int)
      * @see IconHelper#freeIconDrawables()
      */
     public IconDialog setLoadIconDrawables(boolean load) {
@@ -727,37 +1114,60 @@ public class IconDialog extends DialogFragment {
         return this;
     }
 
+    /**
+     * Set whether enabled icons are rasterized into an atlas of alpha-only bitmaps at the
+     * icon size when dialog is shown. Icons are then drawn from the atlas instead of their
+     * drawable, which makes scrolling cheaper. Icons are drawn from their drawable until
+     * the atlas is ready, so the first icons shown are usually drawn from their drawable.
+     * If sprites were generated at build time (see icon-sprites.gradle), they are loaded
+     * as the atlas instead of rasterizing icons, but only when the atlas is used.
+     * Atlas is freed with {@link IconHelper#freeIconDrawables()}. By default, atlas isn't used.
+     * @param use whether to use it or not
+     * @return the dialog
+     */
+    public IconDialog setUseIconAtlas(boolean use) {
+        useIconAtlas = use;
+        return this;
+    }
 
-    static class Item {
 
-        static final int TYPE_ICON = 0;
-        static final int TYPE_HEADER = 1;
+    /**
+     * Callback used to find the difference between two list models.
+     * Selection isn't compared since it's kept by icon ID, independently of items.
+     */
+    private static class ItemDiffCallback extends DiffUtil.Callback {
 
-        final int type;
-        final Icon icon;
-        final Category category;
-        boolean isSelected;
+        private final IconListModel oldModel;
+        private final IconListModel newModel;
 
-        Item(Icon icon) {
-            this.icon = icon;
-            this.category = icon.category;
-            type = TYPE_ICON;
+        ItemDiffCallback(IconListModel oldModel, IconListModel newModel) {
+            this.oldModel = oldModel;
+            this.newModel = newModel;
         }
 
-        Item(Category category) {
-            this.icon = null;
-            this.category = category;
-            type = TYPE_HEADER;
+        @Override
+        public int getOldListSize() {
+            return oldModel.size();
         }
 
-        int getId() {
-            if (type == TYPE_ICON) {
-                return icon.id;
+        @Override
+        public int getNewListSize() {
+            return newModel.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldPos, int newPos) {
+            return oldModel.getItemId(oldPos) == newModel.getItemId(newPos);
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldPos, int newPos) {
+            if (oldModel.getItemType(oldPos) == IconListModel.TYPE_HEADER) {
+                return oldModel.getCategory(oldPos) == newModel.getCategory(newPos);
             } else {
-                return -(category.id + 1);
+                return oldModel.getIcon(oldPos) == newModel.getIcon(newPos);
             }
         }
-
     }
 
     private class IconAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
@@ -777,99 +1187,114 @@ public class IconDialog extends DialogFragment {
             parent = recyclerView;
         }
 
-        class IconViewHolder extends RecyclerView.ViewHolder {
+        /**
+         * View holder for icons. Binding creates no objects unless the bound icon changes,
+         * so that rebinding an item, for example when it's selected, creates no garbage.
+         */
+        class IconViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener {
 
             private ImageView iconImv;
 
+            private @Nullable Icon boundIcon;
+            private @Nullable IconAtlas boundAtlas;
+
             IconViewHolder(View view) {
                 super(view);
                 iconImv = (ImageView) view;
+                iconImv.setOnClickListener(this);
             }
 
-            void bindViewHolder(final Item item) {
-                iconImv.setImageDrawable(item.icon.getDrawable(context));
-                iconImv.setOnClickListener(new View.OnClickListener() {
-                    @SuppressWarnings("ConstantConditions")
-                    @Override
-                    public void onClick(View v) {
-                        if (item.icon.noDrawable) {
-                            return;  // Can't select unavailable icon
-                        }
+            void bindViewHolder(Icon icon) {
+                IconAtlas atlas = (useIconAtlas ? iconHelper.getIconAtlas(iconContentSize) : null);
+                if (icon != boundIcon || atlas != boundAtlas) {
+                    // Icon changed or atlas was loaded, set a new drawable
+                    Drawable drawable = null;
+                    if (atlas != null) {
+                        drawable = atlas.getDrawable(icon.id);
+                    }
+                    if (drawable == null) {
+                        drawable = icon.getDrawable(context);
+                    }
+                    iconImv.setImageDrawable(drawable);
+                    boundIcon = icon;
+                    boundAtlas = atlas;
+                }
 
-                        // Icon clicked, select it
-                        if (showSelectBtn) {
-                            int itemPos = getAdapterPosition();
-                            if (allowMultipleSelection) {
-                                if (item.isSelected) {
-                                    item.isSelected = false;
-                                    selectedItems.remove(item);
-                                } else {
-                                    item.isSelected = true;
-                                    selectedItems.add(item);
-                                }
-                                notifyItemChanged(itemPos);
-
-                            } else if (!item.isSelected) {
-                                if (selectedItems.size() > 0) {
-                                    int oldPos = getItemsPosition(selectedItems.get(0))[0];
-                                    Item oldItem = selectedItems.remove(0);
-                                    oldItem.isSelected = false;
-                                    notifyItemChanged(oldPos);
-                                }
-
-                                item.isSelected = true;
-                                selectedItems.add(item);
-                                notifyItemChanged(itemPos);
-                            }
+                iconImv.setAlpha(icon.noDrawable ? 0.3f : 1.0f);
+                iconImv.setColorFilter(iconColorFilters[selection.isSelected(icon.id) ? 1 : 0]);
+            }
 
-                            selectBtn.setEnabled(selectedItems.size() > 0);
-                            if (showClearBtn) {
-                                clearBtn.setVisibility(selectedItems.size() > 0 ? View.VISIBLE : View.GONE);
-                            }
+            @SuppressWarnings("ConstantConditions")
+            @Override
+            public void onClick(View v) {
+                Icon icon = boundIcon;
+                if (icon == null || icon.noDrawable) {
+                    return;  // Can't select unavailable icon
+                }
 
-                        } else {
-                            if (selectedItems.size() > 0) {
-                                Item oldItem = selectedItems.remove(0);
-                                oldItem.isSelected = false;
+                // Icon clicked, select it
+                int iconId = icon.id;
+                if (showSelectBtn) {
+                    int itemPos = getAdapterPosition();
+                    if (allowMultipleSelection) {
+                        selection.toggle(iconId);
+                        notifyItemChanged(itemPos);
+
+                    } else if (!selection.isSelected(iconId)) {
+                        int oldId = selection.getFirst();
+                        if (oldId != -1) {
+                            selection.setSelected(oldId, false);
+                            int oldPos = listModel.getIconPosition(oldId);
+                            if (oldPos != -1) {
+                                notifyItemChanged(oldPos);
                             }
-                            item.isSelected = true;
-                            selectedItems.add(item);
-
-                            // Send result to caller
-                            callSelectCallback();
-                            dismiss();
                         }
+
+                        selection.setSelected(iconId, true);
+                        notifyItemChanged(itemPos);
                     }
-                });
 
+                    updateSelectionButtons();
 
-                iconImv.setAlpha(item.icon.noDrawable ? 0.3f : 1.0f);
-                if (item.isSelected) {
-                    // Icon is selected
-                    iconImv.setColorFilter(iconColors[1], PorterDuff.Mode.SRC_IN);
                 } else {
-                    iconImv.setColorFilter(iconColors[0], PorterDuff.Mode.SRC_IN);
+                    selection.clear();
+                    selection.setSelected(iconId, true);
+
+                    // Send result to caller
+                    callSelectCallback();
+                    dismiss();
                 }
             }
         }
 
         class HeaderViewHolder extends RecyclerView.ViewHolder {
             private TextView headerTxv;
+            private @Nullable Category boundCategory;
 
             HeaderViewHolder(View view) {
                 // Used with both "icd_item_header" and "icd_item_sticky_header" layouts
                 super(view);
                 headerTxv = view.findViewById(R.id.header_txv);
+
+                view.setOnClickListener(new View.OnClickListener() {
+                    @Override
+                    public void onClick(View v) {
+                        onHeaderClicked(getAdapterPosition());
+                    }
+                });
             }
 
-            void bindViewHolder(final Item item) {
-                headerTxv.setText(item.category.nameResId);
+            void bindViewHolder(Category category) {
+                if (category != boundCategory) {
+                    headerTxv.setText(category.nameResId);
+                    boundCategory = category;
+                }
             }
         }
 
         @Override
         public @NonNull RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
-            if (viewType == Item.TYPE_ICON) {
+            if (viewType == IconListModel.TYPE_ICON) {
                 View v = LayoutInflater.from(parent.getContext())
                         .inflate(R.layout.icd_item_icon, parent, false);
                 return new IconViewHolder(v);
@@ -882,44 +1307,39 @@ public class IconDialog extends DialogFragment {
 
         @Override
         public void onBindViewHolder(@NonNull final RecyclerView.ViewHolder holder, final int position) {
-            final Item item = listItems.get(position);
-            if (item.type == Item.TYPE_ICON) {
-                ((IconViewHolder) holder).bindViewHolder(item);
+            if (listModel.getItemType(position) == IconListModel.TYPE_ICON) {
+                ((IconViewHolder) holder).bindViewHolder(listModel.getIcon(position));
             } else {
-                ((HeaderViewHolder) holder).bindViewHolder(item);
+                ((HeaderViewHolder) holder).bindViewHolder(listModel.getCategory(position));
             }
         }
 
         @Override
         public int getItemCount() {
-            return listItems.size();
+            return listModel.size();
         }
 
         @Override
         public long getItemId(int position) {
-            return listItems.get(position).getId();
+            return listModel.getItemId(position);
         }
 
         @Override
         public int getItemViewType(int position) {
-            return listItems.get(position).type;
+            return listModel.getItemType(position);
         }
 
 
         // Sticky header methods
 
         @Override
-        public boolean isHeader(int position) {
-            return listItems.get(position).type == Item.TYPE_HEADER;
+        public int getHeaderPositionForItem(int position) {
+            return listModel.getHeaderPositionForItem(position);
         }
 
         @Override
-        public int getHeaderPositionForItem(int position) {
-            do {
-                if (isHeader(position)) return position;
-                position--;
-            } while (position >= 0);
-            return -1;
+        public int getNextHeaderPosition(int position) {
+            return listModel.getNextHeaderPosition(position);
         }
 
         @Override
@@ -933,10 +1353,27 @@ public class IconDialog extends DialogFragment {
         public void onBindHeaderViewHolder(RecyclerView.ViewHolder viewHolder, int position) {
             onBindViewHolder(viewHolder, position);
         }
+
+        @Override
+        public void onHeaderClicked(int position) {
+            // With multiple selection, header click selects all icons of category
+            if (allowMultipleSelection && position != RecyclerView.NO_POSITION) {
+                int end = listModel.getNextHeaderPosition(position);
+                toggleRangeSelection(position + 1, end != -1 ? end : listModel.size());
+            }
+        }
     }
 
     public interface Callback {
         void onIconDialogIconsSelected(Icon[] icons);
     }
 
+    /**
+     * Callback receiving the ID of the selected icons, sorted. Can be implemented
+     * instead of or with {@link Callback}, and avoids looking up icons for large selections.
+     */
+    public interface IdCallback {
+        void onIconDialogIconIdsSelected(int[] iconIds);
+    }
+
 }
@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) 2018 Nicolas Maltais
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.maltaisn.icondialog;
+
+
+import android.content.res.ColorStateList;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.ColorFilter;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PixelFormat;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffColorFilter;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * Drawable of an icon, filling its path in a 24x24 viewport scaled to the drawable bounds.
+ * Path is shared between all drawables created from the same constant state, each drawable
+ * transforms it to its bounds. The canvas isn't scaled since before API 28, the hardware renderer
+ * rasterizes a path at the canvas scale it's drawn with, so a scaled 24x24 path would be blurry.
+ */
+class IconDrawable extends Drawable {
+
+    private static final String TAG = IconDrawable.class.getSimpleName();
+
+    static final float VIEWPORT_SIZE = 24f;
+
+    private final IconState state;
+    private final Paint paint;
+
+    // Path transformed to drawable bounds, created when bounds are set
+    private @Nullable Path boundsPath;
+    private @Nullable Matrix boundsMatrix;
+
+    private @Nullable ColorFilter colorFilter;
+    private @Nullable ColorStateList tint;
+    private PorterDuff.Mode tintMode;
+    private @Nullable PorterDuffColorFilter tintFilter;
+
+    /**
+     * Create a new icon drawable
+     * @param data icon path data
+     * @param size intrinsic width and height of the drawable in pixels
+     * @throws IllegalArgumentException if path data is invalid
+     */
+    IconDrawable(PathData data, int size) {
+        // Path memory is roughly the coordinates of its points and one byte per verb
+        this(new IconState(createPath(data), size, data.coords.length * 4 + data.ops.length));
+    }
+
+    /**
+     * Create a path from parsed path data
+     * @param data the path data
+     * @return the path, in viewport coordinates
+     * @throws IllegalArgumentException if data is invalid
+     */
+    static Path createPath(PathData data) {
+        Path path = new Path();
+        float[] c = data.coords;
+        int i = 0;
+        try {
+            for (byte op : data.ops) {
+                switch (op) {
+                    case PathData.OP_MOVE:
+                        path.moveTo(c[i], c[i + 1]);
+                        i += 2;
+                        break;
+                    case PathData.OP_LINE:
+                        path.lineTo(c[i], c[i + 1]);
+                        i += 2;
+                        break;
+                    case PathData.OP_CUBIC:
+                        path.cubicTo(c[i], c[i + 1], c[i + 2], c[i + 3], c[i + 4], c[i + 5]);
+                        i += 6;
+                        break;
+                    case PathData.OP_QUAD:
+                        path.quadTo(c[i], c[i + 1], c[i + 2], c[i + 3]);
+                        i += 4;
+                        break;
+                    case PathData.OP_CLOSE:
+                        path.close();
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Invalid path opcode " + op + ".");
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Path data has too few coordinates.");
+        }
+        return path;
+    }
+
+    private IconDrawable(IconState state) {
+        this.state = state;
+        paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setStyle(Paint.Style.FILL);
+        paint.setColor(Color.BLACK);
+        tintMode = PorterDuff.Mode.SRC_IN;
+    }
+
+    @Override
+    public void draw(@NonNull Canvas canvas) {
+        Rect bounds = getBounds();
+        if (bounds.width() <= 0 || bounds.height() <= 0) return;
+
+        if (boundsPath == null) return;
+
+        paint.setColorFilter(colorFilter != null ? colorFilter : tintFilter);
+        canvas.drawPath(boundsPath, paint);
+    }
+
+    @Override
+    protected void onBoundsChange(Rect bounds) {
+        if (bounds.width() <= 0 || bounds.height() <= 0) {
+            boundsPath = null;
+            return;
+        }
+
+        if (boundsMatrix == null) {
+            boundsMatrix = new Matrix();
+        }
+        Path path = (boundsPath != null ? boundsPath : new Path());
+        boundsMatrix.setScale(bounds.width() / VIEWPORT_SIZE, bounds.height() / VIEWPORT_SIZE);
+        boundsMatrix.postTranslate(bounds.left, bounds.top);
+        state.path.transform(boundsMatrix, path);
+        boundsPath = path;
+    }
+
+    /**
+     * Get the estimated memory used by the shared path, in bytes
+     */
+    int getPathByteCount() {
+        return state.pathByteCount;
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        if (paint.getAlpha() != alpha) {
+            paint.setAlpha(alpha);
+            invalidateSelf();
+        }
+    }
+
+    @Override
+    public int getAlpha() {
+        return paint.getAlpha();
+    }
+
+    @Override
+    public void setColorFilter(@Nullable ColorFilter colorFilter) {
+        this.colorFilter = colorFilter;
+        invalidateSelf();
+    }
+
+    @Override
+    public @Nullable ColorFilter getColorFilter() {
+        return colorFilter;
+    }
+
+    @Override
+    public void setTintList(@Nullable ColorStateList tint) {
+        this.tint = tint;
+        updateTintFilter();
+        invalidateSelf();
+    }
+
+    @Override
+    public void setTintMode(@NonNull PorterDuff.Mode tintMode) {
+        this.tintMode = tintMode;
+        updateTintFilter();
+        invalidateSelf();
+    }
+
+    @Override
+    public boolean isStateful() {
+        return tint != null && tint.isStateful();
+    }
+
+    @Override
+    protected boolean onStateChange(int[] stateSet) {
+        if (tint != null && tint.isStateful()) {
+            updateTintFilter();
+            return true;
+        }
+        return false;
+    }
+
+    private void updateTintFilter() {
+        if (tint == null) {
+            tintFilter = null;
+        } else {
+            int color = tint.getColorForState(getState(), Color.TRANSPARENT);
+            tintFilter = new PorterDuffColorFilter(color, tintMode);
+        }
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+
+    @Override
+    public int getIntrinsicWidth() {
+        return state.size;
+    }
+
+    @Override
+    public int getIntrinsicHeight() {
+        return state.size;
+    }
+
+    @Override
+    public @NonNull Drawable mutate() {
+        // Only the path is shared and it's never modified
+        return this;
+    }
+
+    @Override
+    public ConstantState getConstantState() {
+        return state;
+    }
+
+    private static class IconState extends ConstantState {
+
+        final Path path;
+        final int size;
+        final int pathByteCount;
+
+        IconState(Path path, int size, int pathByteCount) {
+            this.path = path;
+            this.size = size;
+            this.pathByteCount = pathByteCount;
+        }
+
+        @Override
+        public @NonNull Drawable newDrawable() {
+            return new IconDrawable(this);
+        }
+
+        @Override
+        public int getChangingConfigurations() {
+            return 0;
+        }
+    }
+
+}
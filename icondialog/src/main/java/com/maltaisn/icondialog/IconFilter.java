@@ -25,7 +25,11 @@ package com.maltaisn.icondialog;
 import android.support.annotation.Nullable;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Default icon searcher used by IconDialog
@@ -37,9 +41,19 @@ public class IconFilter extends BaseIconFilter {
 
     private static final String TAG = IconFilter.class.getSimpleName();
 
+    // Number of past search results kept, so that erasing text doesn't search again
+    private static final int SEARCH_CACHE_SIZE = 8;
+
     private @Nullable String termPattern;
     private boolean normalizeSearch;
     private boolean enabledIdSearch;
+    private final boolean customMatching;
+
+    private final Map<List<String>, List<Icon>> searchCache;
+    private @Nullable String[] lastSearchTerms;
+    private @Nullable List<Icon> lastSearchResult;
+    private @Nullable IconHelper searchCacheHelper;
+    private int searchCacheDataVersion;
 
     /**
      * Create new icon filter with default settings
@@ -50,6 +64,30 @@ public class IconFilter extends BaseIconFilter {
         termPattern = "[;, ]";
         normalizeSearch = true;
         enabledIdSearch = false;
+        customMatching = isMatchesSearchOverridden();
+
+        searchCache = new LinkedHashMap<List<String>, List<Icon>>(SEARCH_CACHE_SIZE, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<String>, List<Icon>> eldest) {
+                return size() > SEARCH_CACHE_SIZE;
+            }
+        };
+    }
+
+    /**
+     * Check whether a subclass changes how terms are matched, in which case
+     * the label index can't be used and every label must be checked.
+     */
+    private boolean isMatchesSearchOverridden() {
+        for (Class<?> c = getClass(); c != IconFilter.class; c = c.getSuperclass()) {
+            try {
+                c.getDeclaredMethod("matchesSearch", String[].class, LabelValue.class);
+                return true;
+            } catch (NoSuchMethodException e) {
+                // Not overridden in this class
+            }
+        }
+        return false;
     }
 
     /**
@@ -57,10 +95,11 @@ public class IconFilter extends BaseIconFilter {
      * all unicode characters, hyphens, apostrophes and more
      * By default, text is normalized
      * @param normalize whether to normalize
-     * @see IconHelper#normalizeText(String)
+     * @see TextNormalizer#normalize(String)
      */
-    public IconFilter setNormalizeSearch(boolean normalize) {
+    public synchronized IconFilter setNormalizeSearch(boolean normalize) {
         this.normalizeSearch = normalize;
+        clearSearchCache();
         return this;
     }
 
@@ -69,8 +108,9 @@ public class IconFilter extends BaseIconFilter {
      * By default, terms are split on pattern "[;, ]"
      * @param pattern regex pattern to use, or null to do no split
      */
-    public IconFilter setTermSplitPattern(@Nullable String pattern) {
+    public synchronized IconFilter setTermSplitPattern(@Nullable String pattern) {
         termPattern = pattern;
+        clearSearchCache();
         return this;
     }
 
@@ -85,6 +125,8 @@ public class IconFilter extends BaseIconFilter {
 
     /**
      * {@inheritDoc}
+     * Results of the last searches are cached. If search only extends the terms of the last
+     * search, for example when typing "car" after "ca", only the last result is filtered.
      */
     @Override
     public List<Icon> getIconsForSearch(@Nullable String search) {
@@ -104,54 +146,180 @@ public class IconFilter extends BaseIconFilter {
             }
         }
 
-        List<Icon> matchingIcons = super.getIconsForSearch(search);
+        List<Icon> matchingIcons = findIconsForSearch(search);
+        if (matchingIcons == null) {
+            // No search, all enabled icons match
+            return super.getIconsForSearch(search);
+        }
+
+        // Return a copy since cached list mustn't be modified
+        return new ArrayList<>(matchingIcons);
+    }
+
+    /**
+     * Get the icons matching search text from the cache, or search them and cache the result.
+     * Searches are done on a background thread while settings can be changed on another thread,
+     * so settings and cache are only accessed while holding the lock.
+     * @param search search text
+     * @return the cached list of matching icons, mustn't be modified. Null if there's no search.
+     */
+    private synchronized @Nullable List<Icon> findIconsForSearch(@Nullable String search) {
+        String[] searchTerms = getSearchTerms(search);
+        if (searchTerms == null) {
+            return null;
+        }
+
+        if (searchCacheHelper != iconHelper || searchCacheDataVersion != iconHelper.getDataVersion()) {
+            // Icons or labels changed since last search
+            clearSearchCache();
+            searchCacheHelper = iconHelper;
+            searchCacheDataVersion = iconHelper.getDataVersion();
+        }
+
+        List<String> cacheKey = Arrays.asList(searchTerms);
+        List<Icon> matchingIcons = searchCache.get(cacheKey);
+        if (matchingIcons == null) {
+            if (lastSearchTerms != null && isSearchRefined(lastSearchTerms, searchTerms)) {
+                // Search only narrows the last one, filter last result
+                matchingIcons = filterIcons(lastSearchResult, searchTerms);
+
+            } else if (isLabelIndexUsed()) {
+                // Find matching icons with the label index, then keep only those
+                LabelIndex index = iconHelper.getLabelIndex();
+                BitSet matchingIds = new BitSet();
+                for (String term : searchTerms) {
+                    index.findIcons(term, matchingIds);
+                }
+
+                matchingIds.and(getEnabledIconIds());
+                matchingIcons = new ArrayList<>(matchingIds.cardinality());
+                for (int id = matchingIds.nextSetBit(0); id >= 0; id = matchingIds.nextSetBit(id + 1)) {
+                    matchingIcons.add(iconHelper.getIcon(id));
+                }
 
-        String[] searchTerms = null;
-        if (search != null) {
-            // Split search into terms
-            if (termPattern == null) {
-                searchTerms = new String[]{search};
             } else {
-                searchTerms = search.split(termPattern);
+                matchingIcons = filterIcons(getEnabledIcons(), searchTerms);
             }
 
-            if (normalizeSearch) {
-                search = IconHelper.normalizeText(search);
-            } else {
-                search = search.toLowerCase();
+            searchCache.put(cacheKey, matchingIcons);
+        }
+
+        lastSearchTerms = searchTerms;
+        lastSearchResult = matchingIcons;
+
+        return matchingIcons;
+    }
+
+    /**
+     * Split search text into terms and normalize them. Terms are normalized the same way
+     * whether the label index is used or labels are scanned.
+     * @param search search text
+     * @return the terms, without empty terms, or null if there's no search
+     */
+    private @Nullable String[] getSearchTerms(@Nullable String search) {
+        if (search == null) return null;
+
+        // Split search into terms
+        String[] searchTerms;
+        if (termPattern == null) {
+            searchTerms = new String[]{search};
+        } else {
+            searchTerms = search.split(termPattern);
+        }
+
+        List<String> normTerms = new ArrayList<>(searchTerms.length);
+        for (String term : searchTerms) {
+            term = (normalizeSearch ? TextNormalizer.normalize(term) : term.toLowerCase());
+            if (!term.isEmpty()) {
+                normTerms.add(term);
             }
         }
+        if (normTerms.isEmpty()) return null;
+        return normTerms.toArray(new String[normTerms.size()]);
+    }
 
-        // Remove all icons that don't match any of the search terms
-        for (int i = matchingIcons.size() - 1; i >= 0; i--) {
+    /**
+     * Check if new search terms can only match icons matched by old search terms.
+     * That is the case if each term contains the old term at the same position.
+     * Results can't be narrowed if a subclass changes how terms are matched.
+     */
+    private boolean isSearchRefined(String[] oldTerms, String[] newTerms) {
+        if (customMatching || oldTerms.length != newTerms.length) {
+            return false;
+        }
+        for (int i = 0; i < oldTerms.length; i++) {
+            if (oldTerms[i].isEmpty() && !newTerms[i].isEmpty() || !newTerms[i].contains(oldTerms[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the icons in a list which match any of the search terms
+     * @param icons icons to filter
+     * @param searchTerms search terms
+     * @return the new list of matching icons
+     */
+    private List<Icon> filterIcons(List<Icon> icons, String[] searchTerms) {
+        List<Icon> matchingIcons = new ArrayList<>();
+        for (Icon icon : icons) {
             boolean matches = false;
-            if (search == null || search.isEmpty()) {
-                matches = true;
-            } else {
-                Icon icon = matchingIcons.get(i);
-                for (Label label : icon.labels) {
-                    if (label.aliases != null) {
-                        for (LabelValue alias : label.aliases) {
-                            if (matchesSearch(searchTerms, alias)) {
-                                matches = true;
-                                break;
-                            }
-                        }
-                    } else if (label.value != null) {
-                        if (matchesSearch(searchTerms, label.value)) {
+            for (Label label : icon.labels) {
+                if (label == null) {
+                    continue;
+                }
+                if (label.aliases != null) {
+                    for (LabelValue alias : label.aliases) {
+                        if (matchesSearch(searchTerms, alias)) {
                             matches = true;
                             break;
                         }
                     }
+                } else if (label.value != null) {
+                    matches = matchesSearch(searchTerms, label.value);
                 }
+                if (matches) break;
             }
 
-            if (!matches) matchingIcons.remove(i);
+            if (matches) matchingIcons.add(icon);
         }
-
         return matchingIcons;
     }
 
+    private boolean isLabelIndexUsed() {
+        return normalizeSearch && !customMatching;
+    }
+
+    /**
+     * Clear cached search results. Must be called if any setting affecting results is changed.
+     */
+    protected synchronized void clearSearchCache() {
+        searchCache.clear();
+        lastSearchTerms = null;
+        lastSearchResult = null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public IconFilter setDisabledCategories(@Nullable int... categories) {
+        super.setDisabledCategories(categories);
+        clearSearchCache();
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public IconFilter setDisabledIcons(@Nullable int... icons) {
+        super.setDisabledIcons(icons);
+        clearSearchCache();
+        return this;
+    }
+
     /**
      * Check if a reference text contains search or search contains reference text
      * @param searchTerms search terms, lowercase
@@ -27,7 +27,12 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
+import android.content.res.Resources;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.annotation.Nullable;
+import android.support.annotation.RawRes;
 import android.support.annotation.XmlRes;
 import android.util.Log;
 import android.util.SparseArray;
@@ -35,11 +40,19 @@ import android.util.SparseArray;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.text.Normalizer;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 @SuppressWarnings({"WeakerAccess", "unused"})
 public class IconHelper {
@@ -57,6 +70,12 @@ public class IconHelper {
     private static final String XML_ATTR_PATH = "path";
     private static final String XML_ATTR_CATEGORY = "category";
 
+    // Binary catalog constants, see icon-catalog.gradle for the format
+    private static final int CATALOG_MAGIC_ICONS = 0x49434449;
+    private static final int CATALOG_MAGIC_LABELS = 0x4943444C;
+    private static final int CATALOG_MAGIC_SPRITES = 0x49434453;
+    private static final int CATALOG_VERSION = 1;
+
     public static final int CATEGORY_PEOPLE =     0;
     public static final int CATEGORY_HOME =       1;
     public static final int CATEGORY_TECHNOLOGY = 2;
@@ -79,27 +98,50 @@ public class IconHelper {
 
     // Warning here is ignored see: http://stackoverflow.com/a/40235834/5288316
     @SuppressLint("StaticFieldLeak")
-    private static IconHelper INSTANCE;
+    private static InstanceLoader instanceLoader;
+    private static @Nullable BitSet loadedCategoriesConfig;
     private final Context context;
 
-    private Thread drawablesLoader;
+    // Categories whose icons are loaded, null if all are loaded
+    private final @Nullable BitSet loadedCategories;
+
+    private final DrawableCache drawableCache;
+    private final SparseArray<FutureTask<Drawable>> pendingDrawables;
+    private final DrawablePreloader drawablePreloader;
+    private final PathDataCache pathDataCache;
+    private volatile @Nullable IconAtlas iconAtlas;
+    private final Object atlasLock;
+    private @Nullable Thread atlasLoader;  // Guarded by atlasLock
+    private int atlasGeneration;  // Guarded by atlasLock, incremented when atlas is replaced or freed
 
     private SparseArray<Icon> icons;
     private List<Label> labels;
     private List<Label> groupLabels;
     private SparseArray<Category> categories;
+    private volatile LabelIndex labelIndex;
+    private volatile int dataVersion;
 
     private @XmlRes int extraIconsXml;
     private @XmlRes int extraLabelsXml;
 
     private IconHelper(Context context) {
         this.context = context.getApplicationContext();
+        loadedCategories = getLoadedCategoriesConfig();
 
         extraIconsXml = 0;
         extraLabelsXml = 0;
 
-        loadLabels(R.xml.icd_labels, false);
-        loadIcons(R.xml.icd_icons, false);
+        drawableCache = new DrawableCache(DrawableCache.getDefaultMaxSize());
+        this.context.registerComponentCallbacks(drawableCache);
+        pendingDrawables = new SparseArray<>();
+        atlasLock = new Object();
+        pathDataCache = new PathDataCache(this.context.getCacheDir(), CATALOG_VERSION);
+        this.context.registerComponentCallbacks(pathDataCache);
+        drawablePreloader = new DrawablePreloader(this, drawableCache, pathDataCache);
+
+        loadLabelCatalog(R.raw.icd_labels);
+        loadIconCatalog(R.raw.icd_icons);
+        onDataChanged();
 
         context.registerReceiver(new BroadcastReceiver() {
             @Override
@@ -111,15 +153,81 @@ public class IconHelper {
     }
 
     /**
-     * Get the instance of IconHelper
+     * Get the instance of IconHelper. If it's not loaded yet, icons and labels are loaded
+     * on the calling thread. If they are already being loaded asynchronously, this blocks
+     * until loading is done.
      * @param context any context
      * @return the instance
+     * @see #loadInstance(Context, LoadCallback)
      */
     public static IconHelper getInstance(Context context) {
-        if (INSTANCE == null) {
-            INSTANCE = new IconHelper(context.getApplicationContext());
+        InstanceLoader loader = getInstanceLoader(context);
+        loader.run();  // Does nothing if already loading or loaded
+        return loader.getInstance();
+    }
+
+    /**
+     * Start loading the instance of IconHelper on a background thread if not already loaded.
+     * This can be called early, for example in {@code Application#onCreate},
+     * so that icons are ready when the icon dialog is shown.
+     * @param context any context
+     * @param callback callback called on the main thread when instance is loaded,
+     *                 immediately posted if already loaded. Can be null.
+     */
+    public static void loadInstance(Context context, @Nullable LoadCallback callback) {
+        InstanceLoader loader = getInstanceLoader(context);
+        loader.start();
+        if (callback != null) {
+            loader.addCallback(callback);
+        }
+    }
+
+    /**
+     * Check whether the instance of IconHelper is loaded, in which case
+     * {@link #getInstance(Context)} won't block.
+     * @return true if loaded
+     */
+    public static synchronized boolean isInstanceLoaded() {
+        return instanceLoader != null && instanceLoader.isDone();
+    }
+
+    /**
+     * Set the categories whose icons are loaded. Icons of other categories are skipped when
+     * loading, so that loading time and memory only depend on the icons actually shown.
+     * Skipped icons can't be obtained with {@link #getIcon(int)} and are never shown in the
+     * dialog, even if their category isn't disabled in its filter. Must be called before the
+     * instance is loaded, for example at the start of {@code Application#onCreate}.
+     * By default, all categories are loaded.
+     * @param categories array or varargs of category IDs to load, null to load all categories.
+     *                   Categories of extra icons must be included if they are used.
+     */
+    public static synchronized void setLoadedCategories(@Nullable int... categories) {
+        if (instanceLoader != null) {
+            throw new IllegalStateException("Loaded categories must be set before instance is loaded.");
+        }
+        if (categories != null) {
+            loadedCategoriesConfig = new BitSet();
+            for (int id : categories) {
+                loadedCategoriesConfig.set(id);
+            }
+        } else {
+            loadedCategoriesConfig = null;
+        }
+    }
+
+    private static synchronized @Nullable BitSet getLoadedCategoriesConfig() {
+        return loadedCategoriesConfig;
+    }
+
+    private boolean isCategoryLoaded(int id) {
+        return loadedCategories == null || loadedCategories.get(id);
+    }
+
+    private static synchronized InstanceLoader getInstanceLoader(Context context) {
+        if (instanceLoader == null) {
+            instanceLoader = new InstanceLoader(context.getApplicationContext());
         }
-        return INSTANCE;
+        return instanceLoader;
     }
 
     /**
@@ -164,6 +272,7 @@ public class IconHelper {
 
     /**
      * Add extra icons for the dialog. This can only be called once.
+     * Extra icons are parsed from XML, unlike default icons which are compiled at build time.
      * Both files must be valid, no error checking is done
      * @param iconXml xml file containing the icons
      * @param labelXml xml file containing the labels used by the icons
@@ -178,6 +287,7 @@ public class IconHelper {
 
         loadLabels(extraLabelsXml, true);
         loadIcons(extraIconsXml, true);
+        onDataChanged();
     }
 
     /**
@@ -186,10 +296,107 @@ public class IconHelper {
      * If you are changing your app language without a restart, this must be called.
      */
     public void reloadLabels() {
-        loadLabels(R.xml.icd_labels, false);
+        loadLabelCatalog(R.raw.icd_labels);
         if (extraLabelsXml != 0) {
             loadLabels(extraLabelsXml, true);
         }
+        onDataChanged();
+    }
+
+    /**
+     * Load icons and categories from the binary catalog compiled at build time.
+     * Labels must be loaded before.
+     * @param rawFile raw resource of the icons catalog
+     */
+    private void loadIconCatalog(@RawRes int rawFile) {
+        icons = new SparseArray<>();
+        categories = new SparseArray<>();
+        groupLabels = new ArrayList<>();
+
+        ByteArrayOutputStream pathArenaOut = null;
+        try {
+            ByteBuffer bb = readCatalog(rawFile, CATALOG_MAGIC_ICONS);
+
+            // Categories, name is a string resource entry name in the library's resource package,
+            // which isn't necessarily the application ID
+            Resources res = context.getResources();
+            String packageName = res.getResourcePackageName(rawFile);
+            int categoryCount = bb.getShort();
+            for (int i = 0; i < categoryCount; i++) {
+                int id = bb.getShort();
+                String name = readCatalogString(bb);
+                if (isCategoryLoaded(id)) {
+                    int resId = res.getIdentifier(name, "string", packageName);
+                    categories.put(id, new Category(id, resId));
+                }
+            }
+
+            // Labels referenced by icons, find each one only once
+            // Note: it is possible that a translation is missing a label. In that
+            // case, set no ID which will result in label being ignored
+            Label[] iconLabels = new Label[bb.getInt()];
+            for (int i = 0; i < iconLabels.length; i++) {
+                int index = Collections.binarySearch(labels, readCatalogString(bb));
+                iconLabels[i] = (index >= 0 ? labels.get(index) : null);
+            }
+            int groupLabelCount = bb.getInt();
+            groupLabels = new ArrayList<>(groupLabelCount);
+            for (int i = 0; i < groupLabelCount; i++) {
+                groupLabels.add(new Label(readCatalogString(bb), null, null));
+            }
+
+            // Path data for all icons. If all categories are loaded, it's copied to a single
+            // arena, otherwise the path data of loaded icons is copied when they are read.
+            int pathDataLength = bb.getInt();
+            int pathDataStart = bb.position();
+            byte[] pathArena = null;
+            if (loadedCategories == null) {
+                pathArena = Arrays.copyOfRange(bb.array(), pathDataStart, pathDataStart + pathDataLength);
+            } else {
+                pathArenaOut = new ByteArrayOutputStream();
+            }
+            bb.position(pathDataStart + pathDataLength);
+
+            int iconCount = bb.getInt();
+            icons = new SparseArray<>(iconCount);
+            for (int i = 0; i < iconCount; i++) {
+                int id = bb.getInt();
+                Category category = categories.get(bb.getShort());
+                int labelCount = bb.get();
+                if (category == null) {
+                    // Category isn't loaded, skip icon labels and path offset and length
+                    bb.position(bb.position() + labelCount * 2 + 8);
+                    continue;
+                }
+
+                Label[] labels = new Label[labelCount];
+                for (int j = 0; j < labels.length; j++) {
+                    int ref = bb.getShort();
+                    labels[j] = (ref >= 0 ? iconLabels[ref] : groupLabels.get(-(ref + 1)));
+                }
+                int pathOffset = bb.getInt();
+                int pathLength = bb.getInt();
+                if (pathArenaOut != null) {
+                    int start = pathDataStart + pathOffset;
+                    pathOffset = pathArenaOut.size();
+                    pathArenaOut.write(bb.array(), start, pathLength);
+                }
+
+                icons.append(id, new Icon(id, category, labels, pathArena, pathOffset, pathLength));
+            }
+
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Could not load icons and categories from catalog.", e);
+
+        } finally {
+            if (pathArenaOut != null) {
+                // Set the arena even if loading failed, it has the path data of all icons loaded
+                byte[] pathArena = pathArenaOut.toByteArray();
+                for (int i = 0; i < icons.size(); i++) {
+                    icons.valueAt(i).setPathArena(pathArena);
+                }
+            }
+        }
     }
 
     /**
@@ -204,6 +411,10 @@ public class IconHelper {
 
         ArrayList<GroupLabelRef> groupLabelRefs = new ArrayList<>();
 
+        // Path data of all icons is written to a single arena, set on icons when done
+        ByteArrayOutputStream pathArenaOut = new ByteArrayOutputStream();
+        ArrayList<Icon> arenaIcons = new ArrayList<>();
+
         XmlPullParser parser = context.getResources().getXml(xmlFile);
         try {
             Category category = null;
@@ -239,25 +450,41 @@ public class IconHelper {
                         String pathStr = parser.getAttributeValue(null, XML_ATTR_PATH);
                         String catgStr = parser.getAttributeValue(null, XML_ATTR_CATEGORY);
 
-                        byte[] pathData = null;
-                        if (pathStr != null) {
-                            pathData = pathStr.getBytes();
-                        } else {
-                            // Missing path attribute, check if can inherit
-                            Icon parent = icons.get(id);
-                            if (parent != null) {
-                                pathData = parent.pathData;
-                            }  // else icon is missing attribute, error
-                        }
-
                         Category iconCatg = null;
                         if (catgStr != null && category == null) {
                             iconCatg = categories.get(Integer.valueOf(catgStr));
                         } else {
                             iconCatg = category;
                         }
+                        if (iconCatg != null && !isCategoryLoaded(iconCatg.id)) {
+                            // Category isn't loaded, skip icon
+                            eventType = parser.next();
+                            continue;
+                        }
 
-                        Icon icon = new Icon(id, iconCatg, null, pathData);
+                        Icon icon;
+                        if (pathStr != null) {
+                            icon = new Icon(id, iconCatg, null, null, pathArenaOut.size(), pathStr.length());
+                            for (int i = 0; i < pathStr.length(); i++) {
+                                pathArenaOut.write(pathStr.charAt(i));
+                            }
+                            arenaIcons.add(icon);
+                        } else {
+                            // Missing path attribute, check if can inherit
+                            Icon parent = icons.get(id);
+                            if (parent != null) {
+                                icon = new Icon(id, iconCatg, null, parent.pathArena,
+                                        parent.pathOffset, parent.pathLength);
+                                if (parent.pathArena == null) {
+                                    // Parent path is in the arena being written
+                                    arenaIcons.add(icon);
+                                }
+                            } else {
+                                // Icon is missing attribute, error
+                                icon = new Icon(id, iconCatg, null, null, 0, 0);
+                                arenaIcons.add(icon);
+                            }
+                        }
 
                         // Find the ID for each label
                         if (allLabelsStr != null) {
@@ -311,6 +538,13 @@ public class IconHelper {
 
         } catch (XmlPullParserException | IOException e) {
             Log.e(TAG, "Could not parse icons and categories from XML.", e);
+
+        } finally {
+            // Set the arena even if parsing failed, it has the path data of all icons parsed
+            byte[] pathArena = pathArenaOut.toByteArray();
+            for (Icon icon : arenaIcons) {
+                icon.setPathArena(pathArena);
+            }
         }
     }
 
@@ -328,6 +562,80 @@ public class IconHelper {
 
     }
 
+    /**
+     * Load labels from the binary catalog compiled at build time.
+     * All label references were already resolved when compiling.
+     * @param rawFile raw resource of the labels catalog
+     */
+    private void loadLabelCatalog(@RawRes int rawFile) {
+        labels = new ArrayList<>();
+
+        try {
+            ByteBuffer bb = readCatalog(rawFile, CATALOG_MAGIC_LABELS);
+            int labelCount = bb.getInt();
+            labels = new ArrayList<>(labelCount);
+            for (int i = 0; i < labelCount; i++) {
+                String name = readCatalogString(bb);
+                int aliasCount = bb.getShort();
+                if (aliasCount == -1) {
+                    labels.add(new Label(name, readLabelValue(bb), null));
+                } else {
+                    List<LabelValue> aliases = new ArrayList<>(aliasCount);
+                    for (int j = 0; j < aliasCount; j++) {
+                        aliases.add(readLabelValue(bb));
+                    }
+                    labels.add(new Label(name, null, aliases));
+                }
+            }
+
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Could not load labels from catalog.", e);
+        }
+    }
+
+    private static LabelValue readLabelValue(ByteBuffer bb) {
+        String value = readCatalogString(bb);
+        return new LabelValue(value, readCatalogString(bb));
+    }
+
+    /**
+     * Read a catalog file entirely and check its header
+     * @param rawFile raw resource of the catalog
+     * @param magic expected magic number
+     * @return a byte buffer positioned after the header
+     */
+    private ByteBuffer readCatalog(@RawRes int rawFile, int magic) throws IOException {
+        byte[] data;
+        InputStream in = context.getResources().openRawResource(rawFile);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(in.available(), 8192));
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            data = out.toByteArray();
+        } finally {
+            in.close();
+        }
+
+        ByteBuffer bb = ByteBuffer.wrap(data);
+        if (bb.getInt() != magic || bb.getInt() != CATALOG_VERSION) {
+            throw new IOException("Invalid catalog file or version.");
+        }
+        return bb;
+    }
+
+    /**
+     * Read a catalog string, a short length followed by UTF-8 bytes
+     */
+    private static String readCatalogString(ByteBuffer bb) {
+        int length = bb.getShort() & 0xFFFF;
+        String str = new String(bb.array(), bb.position(), length, StandardCharsets.UTF_8);
+        bb.position(bb.position() + length);
+        return str;
+    }
+
     /**
      * Load labels from XML
      * @param xmlFile xml file to load from
@@ -391,7 +699,7 @@ public class IconHelper {
                         // used in res/xml due to a bug
                         text = text.replace('`', '\'');
 
-                        LabelValue value = new LabelValue(text, normalizeText(text));
+                        LabelValue value = new LabelValue(text, TextNormalizer.normalize(text));
                         if (hasAliases) {
                             newLabel.aliases.add(value);
                         } else {
@@ -517,59 +825,327 @@ public class IconHelper {
     }
 
     /**
-     * Start loading all icons drawable asynchronously
-     * This loading takes less than 15 sec and takes up to 50-100MB of RAM (check that by yourself)
-     * This is useful to prevent lag when scrolling the icon dialog's list
+     * Called after icons or labels were loaded or reloaded
      */
-    void loadIconDrawables() {
-        drawablesLoader = new Thread() {
-            @Override
-            public void run() {
-                for (int i = 0; i < icons.size(); i++) {
-                    if (icons.valueAt(i).drawable == null) {
-                        icons.valueAt(i).getDrawable(context);
+    private void onDataChanged() {
+        labelIndex = new LabelIndex(icons);
+        dataVersion++;
+    }
+
+    /**
+     * Get a number incremented every time icons or labels change, so that
+     * data derived from them can be invalidated
+     */
+    int getDataVersion() {
+        return dataVersion;
+    }
+
+    /**
+     * Get the index of the normalized label values of all icons, used for search
+     */
+    LabelIndex getLabelIndex() {
+        return labelIndex;
+    }
+
+    /**
+     * Get the drawable of an icon from the cache, creating it if not cached.
+     * Can be called from any thread, blocks if drawable is being created on another thread.
+     * @param icon the icon
+     * @return the drawable, not to be modified
+     */
+    Drawable getIconDrawable(final Icon icon) {
+        // Drawable of an icon is only created once at a time: if it's being created
+        // on another thread, wait for it instead of creating it again.
+        FutureTask<Drawable> task;
+        boolean created = false;
+        synchronized (pendingDrawables) {
+            Drawable drawable = drawableCache.get(icon.id);
+            if (drawable != null) {
+                return drawable;
+            }
+
+            task = pendingDrawables.get(icon.id);
+            if (task == null) {
+                task = new FutureTask<>(new Callable<Drawable>() {
+                    @Override
+                    public Drawable call() {
+                        Drawable drawable = icon.createDrawable(context, pathDataCache);
+                        drawableCache.put(icon.id, drawable);
+                        return drawable;
                     }
+                });
+                pendingDrawables.put(icon.id, task);
+                created = true;
+            }
+        }
+
+        if (created) {
+            // Drawable is cached before task is removed, so it's never created twice
+            task.run();
+            synchronized (pendingDrawables) {
+                pendingDrawables.remove(icon.id);
+            }
+        }
+
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return task.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
                 }
             }
-        };
-        drawablesLoader.setName("iconDrawablesLoader");
-        drawablesLoader.start();
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Could not create icon drawable.", e.getCause());
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Start loading icons drawable asynchronously, until the drawable cache is full.
+     * Icons requested with {@link #preloadIconDrawables(List)} are loaded first.
+     * This is useful to prevent lag when scrolling the icon dialog's list
+     * @param icons icons that can be shown, in the order they are shown. Replaces
+     *              icons passed previously that are not loaded yet.
+     */
+    void loadIconDrawables(List<Icon> icons) {
+        drawablePreloader.preloadCatalog(icons);
+    }
+
+    /**
+     * Load icons drawable asynchronously before any other icons
+     * @param icons icons to load, in loading order
+     */
+    void preloadIconDrawables(List<Icon> icons) {
+        drawablePreloader.preload(icons);
+    }
+
+    /**
+     * Load icons drawable before any other icons and wait until they are loaded
+     * @param icons icons to load, in loading order
+     * @throws InterruptedException if calling thread is interrupted while waiting
+     */
+    void preloadIconDrawablesAndWait(List<Icon> icons) throws InterruptedException {
+        drawablePreloader.preloadAndWait(icons);
     }
 
     void stopLoadingDrawables() {
-        drawablesLoader.interrupt();
+        drawablePreloader.cancel();
+    }
+
+    /**
+     * Start loading an atlas of icons on a background thread, replacing the current atlas.
+     * Sprites rasterized at build time are used if there are any, see icon-sprites.gradle,
+     * otherwise icons are rasterized. Icons not in the atlas use their own drawable.
+     * @param icons icons to rasterize
+     * @param iconSize size of the icons in pixels
+     * @param callback runnable called on the main thread when atlas is loaded
+     */
+    void loadIconAtlas(final List<Icon> icons, final int iconSize, final Runnable callback) {
+        synchronized (atlasLock) {
+            if (atlasLoader != null) {
+                atlasLoader.interrupt();
+            }
+            final int generation = ++atlasGeneration;
+            final Handler mainHandler = new Handler(Looper.getMainLooper());
+            Thread loader = new Thread() {
+                @Override
+                public void run() {
+                    IconAtlas atlas = null;
+                    // Sprites are only generated if enabled, look them up in the library's resource
+                    // package, which isn't necessarily the application ID
+                    Resources res = context.getResources();
+                    int spritesRes = res.getIdentifier("icd_sprites", "raw",
+                            res.getResourcePackageName(R.raw.icd_icons));
+                    if (spritesRes != 0) {
+                        try {
+                            atlas = IconAtlas.load(readCatalog(spritesRes, CATALOG_MAGIC_SPRITES), iconSize);
+                        } catch (IOException e) {
+                            Log.e(TAG, "Could not load icon sprites.", e);
+                        }
+                    }
+                    if (atlas == null) {
+                        pathDataCache.load();
+                        atlas = IconAtlas.rasterize(icons, pathDataCache, iconSize);
+                    }
+                    synchronized (atlasLock) {
+                        // Atlas may have been replaced or freed while it was loading
+                        if (generation == atlasGeneration) {
+                            iconAtlas = atlas;
+                            atlasLoader = null;
+                            mainHandler.post(callback);
+                        }
+                    }
+                }
+            };
+            loader.setName("iconAtlasLoader");
+            loader.setPriority(Thread.NORM_PRIORITY - 1);
+            atlasLoader = loader;
+            loader.start();
+        }
     }
 
     /**
-     * Set to null references to all of the icons drawable so that they can be garbage collected
+     * Get the atlas of rasterized icons
+     * @param iconSize size of the icons in pixels
+     * @return the atlas, or null if there is no atlas for this size
+     */
+    @Nullable IconAtlas getIconAtlas(int iconSize) {
+        IconAtlas atlas = iconAtlas;
+        return (atlas != null && atlas.iconSize == iconSize ? atlas : null);
+    }
+
+    /**
+     * Remove all icon drawables from the cache and free the icon atlas
+     * so that they can be garbage collected
      */
     public void freeIconDrawables() {
-        drawablesLoader.interrupt();
-        for (int i = 0; i < icons.size(); i++) {
-            icons.valueAt(i).drawable = null;
+        stopLoadingDrawables();
+        drawableCache.evictAll();
+        synchronized (atlasLock) {
+            if (atlasLoader != null) {
+                atlasLoader.interrupt();
+                atlasLoader = null;
+            }
+            atlasGeneration++;
+            iconAtlas = null;
         }
     }
 
     /**
-     * Normalize given text, removing all diacritics, all
-     * unicode characters, hyphens, apostrophes and more
-     * @param text text
-     * @return normalized text
+     * Set the maximum size of the icon drawables cache. Size of drawables is estimated
+     * from the size of their path. By default, the cache can use an eighth of the maximum heap size.
+     * The cache is also trimmed when the system is low on memory.
+     * @param maxSize maximum size in bytes
+     */
+    public void setDrawableCacheMaxSize(int maxSize) {
+        drawableCache.resize(maxSize);
+    }
+
+    /**
+     * Set whether the parsed path data of icons is saved to the app's cache directory, so that
+     * icons path data doesn't have to be parsed again in the next sessions. Parsed path data
+     * is kept in memory, even after {@link #freeIconDrawables()}, until the app goes in background
+     * or the system is low on memory. By default, it's saved.
+     * @param persistent whether to save it or not
+     */
+    public void setPathCachePersistent(boolean persistent) {
+        pathDataCache.setPersistent(persistent);
+    }
+
+    /**
+     * Get the number of times an icon drawable was found in the cache
+     */
+    public int getDrawableCacheHitCount() {
+        return drawableCache.hitCount();
+    }
+
+    /**
+     * Get the number of times an icon drawable wasn't in the cache and had to be created
      */
-    static String normalizeText(String text) {
-        // NOTE: Might have to change this method if more translations are made
-        // For example, right now it would remove all chinese and arabic characters
-        text = text.toLowerCase();
-        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKD);
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < normalized.length(); i++) {
-            char c = normalized.charAt(i);
-            if (c >= 'a' && c <= 'z' || c >= '0' && c <= '9') {
-                sb.append(c);
+    public int getDrawableCacheMissCount() {
+        return drawableCache.missCount();
+    }
+
+    /**
+     * Get the number of icon drawables removed from the cache to stay within its maximum size
+     */
+    public int getDrawableCacheEvictionCount() {
+        return drawableCache.evictionCount();
+    }
+
+    /**
+     * Task loading the instance, either on a background thread or on the thread
+     * calling {@link #getInstance(Context)}, whichever runs it first.
+     */
+    private static class InstanceLoader extends FutureTask<IconHelper> {
+
+        private final Handler mainHandler;
+        private final List<LoadCallback> callbacks;
+        private boolean started;
+
+        InstanceLoader(final Context context) {
+            super(new Callable<IconHelper>() {
+                @Override
+                public IconHelper call() {
+                    return new IconHelper(context);
+                }
+            });
+            mainHandler = new Handler(Looper.getMainLooper());
+            callbacks = new ArrayList<>();
+        }
+
+        /**
+         * Start loading on a background thread if not already started
+         */
+        synchronized void start() {
+            if (!started && !isDone()) {
+                started = true;
+                Thread thread = new Thread(this, "iconHelperLoader");
+                thread.setPriority(Thread.NORM_PRIORITY - 1);
+                thread.start();
+            }
+        }
+
+        synchronized void addCallback(LoadCallback callback) {
+            if (isDone()) {
+                postCallback(callback);
+            } else {
+                callbacks.add(callback);
             }
         }
-        return sb.toString();
+
+        @Override
+        protected synchronized void done() {
+            for (LoadCallback callback : callbacks) {
+                postCallback(callback);
+            }
+            callbacks.clear();
+        }
+
+        private void postCallback(final LoadCallback callback) {
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    callback.onIconHelperLoaded(getInstance());
+                }
+            });
+        }
+
+        /**
+         * Wait for loading to be done and get the instance
+         */
+        IconHelper getInstance() {
+            boolean interrupted = false;
+            try {
+                while (true) {
+                    try {
+                        return get();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            } catch (ExecutionException e) {
+                throw new RuntimeException("Could not load icon helper.", e.getCause());
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
     }
 
+    public interface LoadCallback {
+        /**
+         * Called on the main thread when the IconHelper instance is loaded
+         * @param helper the instance
+         */
+        void onIconHelperLoaded(IconHelper helper);
+    }
 
 }
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2018 Nicolas Maltais
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.maltaisn.icondialog;
+
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Model of the icon list: icons in display order, with a header before the icons of each
+ * category if headers are shown. No object is created per item, the type and content of
+ * an item are computed from its position and the positions of the headers.
+ */
+class IconListModel {
+
+    private static final String TAG = IconListModel.class.getSimpleName();
+
+    static final int TYPE_ICON = 0;
+    static final int TYPE_HEADER = 1;
+
+    static final IconListModel EMPTY = new IconListModel(
+            Collections.<Icon>emptyList(), new int[0], new int[0]);
+
+    final List<Icon> icons;
+    final int[] headerPositions;
+
+    // Position of each icon indexed by icon ID, -1 if icon isn't in the list.
+    // Icon IDs are dense so this takes less memory than a map.
+    private final int[] iconPositions;
+
+    private IconListModel(List<Icon> icons, int[] headerPositions, int[] iconPositions) {
+        this.icons = icons;
+        this.headerPositions = headerPositions;
+        this.iconPositions = iconPositions;
+    }
+
+    /**
+     * Get the number of items in the list, icons and headers
+     */
+    int size() {
+        return icons.size() + headerPositions.length;
+    }
+
+    /**
+     * Get the type of the item at a position, either {@link #TYPE_ICON} or {@link #TYPE_HEADER}
+     */
+    int getItemType(int position) {
+        return (Arrays.binarySearch(headerPositions, position) >= 0 ? TYPE_HEADER : TYPE_ICON);
+    }
+
+    /**
+     * Get the icon of the item at a position
+     * @param position position of an icon item
+     * @return the icon
+     */
+    Icon getIcon(int position) {
+        return icons.get(getIconIndex(position));
+    }
+
+    /**
+     * Get the category of the item at a position, icon or header
+     */
+    Category getCategory(int position) {
+        return icons.get(getIconIndex(position)).category;
+    }
+
+    /**
+     * Get a stable ID for the item at a position, the icon ID for
+     * icons and a negative number for headers
+     */
+    long getItemId(int position) {
+        int index = Arrays.binarySearch(headerPositions, position);
+        if (index >= 0) {
+            return -(icons.get(position - index).category.id + 1);
+        } else {
+            return icons.get(position + index + 1).id;
+        }
+    }
+
+    /**
+     * Get the index in the icons list of the item at a position.
+     * For a header, it's the index of the first icon of the category.
+     */
+    private int getIconIndex(int position) {
+        int index = Arrays.binarySearch(headerPositions, position);
+        if (index >= 0) {
+            // Header, there are "index" headers before it
+            return position - index;
+        } else {
+            // Icon, there are "-index - 1" headers before it
+            return position + index + 1;
+        }
+    }
+
+    /**
+     * Get the position of an icon in the list
+     * @param iconId ID of the icon
+     * @return the position, or -1 if icon isn't in the list
+     */
+    int getIconPosition(int iconId) {
+        return (iconId >= 0 && iconId < iconPositions.length ? iconPositions[iconId] : -1);
+    }
+
+    /**
+     * Get the position of the header of the category of an item
+     * @param position item position
+     * @return the header position, or -1 if item has no header
+     */
+    int getHeaderPositionForItem(int position) {
+        int index = Arrays.binarySearch(headerPositions, position);
+        if (index < 0) {
+            // Item isn't a header, get the header before it
+            index = -index - 2;
+        }
+        return (index >= 0 ? headerPositions[index] : -1);
+    }
+
+    /**
+     * Get the position of the first header after an item
+     * @param position item position
+     * @return the header position, or -1 if there are no headers after the item
+     */
+    int getNextHeaderPosition(int position) {
+        int index = Arrays.binarySearch(headerPositions, position);
+        index = (index >= 0 ? index + 1 : -index - 1);
+        return (index < headerPositions.length ? headerPositions[index] : -1);
+    }
+
+    /**
+     * Build the list model in linear time
+     * @param icons icons in display order, icons of a same category must be grouped together.
+     *              The list is kept by the model and must not be modified afterwards.
+     * @param showHeaders whether to add a header item before the icons of each category
+     * @return the list model
+     */
+    static IconListModel build(List<Icon> icons, boolean showHeaders) {
+        // Count headers first so that header positions are allocated once
+        int headerCount = 0;
+        int maxIconId = -1;
+        int lastCatgId = -1;
+        for (int i = 0; i < icons.size(); i++) {
+            Icon icon = icons.get(i);
+            if (showHeaders && icon.category.id != lastCatgId) {
+                headerCount++;
+                lastCatgId = icon.category.id;
+            }
+            maxIconId = Math.max(maxIconId, icon.id);
+        }
+
+        int[] headerPositions = new int[headerCount];
+        int[] iconPositions = new int[maxIconId + 1];
+        Arrays.fill(iconPositions, -1);
+        int header = 0;
+        lastCatgId = -1;
+        for (int i = 0; i < icons.size(); i++) {
+            Icon icon = icons.get(i);
+            if (showHeaders && icon.category.id != lastCatgId) {
+                headerPositions[header] = i + header;
+                header++;
+                lastCatgId = icon.category.id;
+            }
+            iconPositions[icon.id] = i + header;
+        }
+
+        return new IconListModel(icons, headerPositions, iconPositions);
+    }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2018 Nicolas Maltais
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.maltaisn.icondialog;
+
+
+import java.util.BitSet;
+
+/**
+ * Set of selected icons, keyed by icon ID. Selection is independent from the list
+ * items so it doesn't need to be carried over when the list is rebuilt, and icons
+ * not shown in the list stay selected.
+ */
+class IconSelection {
+
+    private static final String TAG = IconSelection.class.getSimpleName();
+
+    private final BitSet selected;
+    private int count;
+
+    IconSelection() {
+        selected = new BitSet();
+        count = 0;
+    }
+
+    boolean isSelected(int iconId) {
+        return selected.get(iconId);
+    }
+
+    /**
+     * Select or unselect an icon
+     * @param iconId ID of the icon
+     * @param select whether to select or unselect it
+     * @return true if selection changed
+     */
+    boolean setSelected(int iconId, boolean select) {
+        if (selected.get(iconId) == select) return false;
+        selected.set(iconId, select);
+        count += (select ? 1 : -1);
+        return true;
+    }
+
+    /**
+     * Select icon if not selected, otherwise unselect it
+     * @param iconId ID of the icon
+     * @return true if icon is now selected
+     */
+    boolean toggle(int iconId) {
+        selected.flip(iconId);
+        boolean select = selected.get(iconId);
+        count += (select ? 1 : -1);
+        return select;
+    }
+
+    void clear() {
+        selected.clear();
+        count = 0;
+    }
+
+    boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * Get the ID of the first selected icon, or -1 if there is none
+     */
+    int getFirst() {
+        return selected.nextSetBit(0);
+    }
+
+    /**
+     * Get the ID of the first selected icon after an icon, or -1 if there is none.
+     * Used to iterate over selection without allocating.
+     */
+    int getNext(int iconId) {
+        return selected.nextSetBit(iconId + 1);
+    }
+
+    /**
+     * Get the ID of the selected icons, sorted
+     */
+    int[] toArray() {
+        int[] ids = new int[count];
+        int i = 0;
+        for (int id = selected.nextSetBit(0); id >= 0; id = selected.nextSetBit(id + 1)) {
+            ids[i] = id;
+            i++;
+        }
+        return ids;
+    }
+
+}
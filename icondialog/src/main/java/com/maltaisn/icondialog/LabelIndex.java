@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2018 Nicolas Maltais
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.maltaisn.icondialog;
+
+
+import android.support.annotation.Nullable;
+import android.util.SparseArray;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Inverted index of the normalized label values of icons, used to search icons without
+ * scanning every label. Each distinct value is indexed by all of its n-grams of 1 to 3
+ * characters, so that a substring search is answered by intersecting posting lists.
+ */
+class LabelIndex {
+
+    private static final String TAG = LabelIndex.class.getSimpleName();
+
+    private static final int MAX_GRAM_LENGTH = 3;
+
+    // Normalized values only contain [a-z0-9], a gram is encoded in base 37 with 0 as no char
+    private static final int GRAM_BASE = 37;
+
+    private final String[] values;
+    private final int[][] valueIcons;
+    private final SparseArray<int[]> postings;
+
+    /**
+     * Build the index
+     * @param icons icons to index, sorted by ID
+     */
+    LabelIndex(SparseArray<Icon> icons) {
+        // Find all distinct normalized values and the icons using them
+        HashMap<String, Integer> valueIndexes = new HashMap<>();
+        List<String> valueList = new ArrayList<>();
+        List<IntList> valueIconList = new ArrayList<>();
+        for (int i = 0; i < icons.size(); i++) {
+            Icon icon = icons.valueAt(i);
+            if (icon.labels == null) continue;
+            for (Label label : icon.labels) {
+                if (label == null) continue;
+                if (label.aliases != null) {
+                    for (LabelValue alias : label.aliases) {
+                        addValue(valueIndexes, valueList, valueIconList, alias.normValue, icon.id);
+                    }
+                } else if (label.value != null) {
+                    addValue(valueIndexes, valueList, valueIconList, label.value.normValue, icon.id);
+                }
+            }
+        }
+
+        values = valueList.toArray(new String[valueList.size()]);
+        valueIcons = new int[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            valueIcons[i] = valueIconList.get(i).toArray();
+        }
+
+        // Index each value by its grams. Values are added in order so posting lists are sorted.
+        SparseArray<IntList> gramValues = new SparseArray<>();
+        for (int i = 0; i < values.length; i++) {
+            String value = values[i];
+            for (int len = 1; len <= MAX_GRAM_LENGTH; len++) {
+                for (int start = 0; start + len <= value.length(); start++) {
+                    int gram = getGram(value, start, len);
+                    if (gram == -1) continue;
+                    IntList list = gramValues.get(gram);
+                    if (list == null) {
+                        list = new IntList();
+                        gramValues.put(gram, list);
+                    }
+                    list.addDistinct(i);
+                }
+            }
+        }
+
+        postings = new SparseArray<>(gramValues.size());
+        for (int i = 0; i < gramValues.size(); i++) {
+            postings.append(gramValues.keyAt(i), gramValues.valueAt(i).toArray());
+        }
+    }
+
+    private static void addValue(HashMap<String, Integer> valueIndexes, List<String> valueList,
+                                 List<IntList> valueIconList, String value, int iconId) {
+        if (value.isEmpty()) return;
+
+        Integer index = valueIndexes.get(value);
+        IntList iconList;
+        if (index == null) {
+            valueIndexes.put(value, valueList.size());
+            valueList.add(value);
+            iconList = new IntList();
+            valueIconList.add(iconList);
+        } else {
+            iconList = valueIconList.get(index);
+        }
+
+        // Icons are added in ID order, so list stays sorted
+        iconList.addDistinct(iconId);
+    }
+
+    /**
+     * Find all icons having a label value containing a term
+     * @param term normalized search term
+     * @param result bit set in which the ID of matching icons is set
+     */
+    void findIcons(String term, BitSet result) {
+        if (term.isEmpty()) return;
+
+        int[] candidates;
+        boolean verify;
+        if (term.length() <= MAX_GRAM_LENGTH) {
+            // Term is a gram itself, posting list is the exact result
+            candidates = postings.get(getGram(term, 0, term.length()));
+            verify = false;
+        } else {
+            // Intersect posting lists of all grams in term, then verify candidates
+            // since grams can appear in a value in a different order
+            candidates = null;
+            for (int start = 0; start + MAX_GRAM_LENGTH <= term.length(); start++) {
+                int[] posting = postings.get(getGram(term, start, MAX_GRAM_LENGTH));
+                candidates = (candidates == null ? posting : intersect(candidates, posting));
+                if (candidates == null || candidates.length == 0) {
+                    return;
+                }
+            }
+            verify = true;
+        }
+
+        if (candidates == null) return;
+
+        for (int index : candidates) {
+            if (!verify || values[index].contains(term)) {
+                for (int id : valueIcons[index]) {
+                    result.set(id);
+                }
+            }
+        }
+    }
+
+    /**
+     * Encode a gram of a normalized string to an integer
+     * @return the gram, or -1 if it contains an unsupported character
+     */
+    private static int getGram(String str, int start, int length) {
+        int gram = 0;
+        for (int i = start; i < start + length; i++) {
+            char c = str.charAt(i);
+            int code;
+            if (c >= '0' && c <= '9') {
+                code = c - '0' + 1;
+            } else if (c >= 'a' && c <= 'z') {
+                code = c - 'a' + 11;
+            } else {
+                return -1;
+            }
+            gram = gram * GRAM_BASE + code;
+        }
+        return gram;
+    }
+
+    /**
+     * Intersect two sorted arrays
+     */
+    private static @Nullable int[] intersect(int[] a1, @Nullable int[] a2) {
+        if (a2 == null) return null;
+
+        int[] result = new int[Math.min(a1.length, a2.length)];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a1.length && j < a2.length) {
+            if (a1[i] < a2[j]) {
+                i++;
+            } else if (a1[i] > a2[j]) {
+                j++;
+            } else {
+                result[size] = a1[i];
+                size++;
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * Growable list of primitive integers
+     */
+    private static class IntList {
+
+        int[] data = new int[4];
+        int size;
+
+        /**
+         * Add a value if it's not the last one added
+         */
+        void addDistinct(int value) {
+            if (size > 0 && data[size - 1] == value) return;
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size] = value;
+            size++;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+
+    }
+
+}
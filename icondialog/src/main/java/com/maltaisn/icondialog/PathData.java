@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2018 Nicolas Maltais
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.maltaisn.icondialog;
+
+/**
+ * Parsed path data of an icon: an opcode for each command and the absolute
+ * coordinates of all commands, in viewport coordinates.
+ * This class and {@link PathParser} have no Android dependency, they are also used at build time
+ * to rasterize sprites, see icon-sprites.gradle.
+ */
+class PathData {
+
+    static final byte OP_MOVE = 0;  // x, y
+    static final byte OP_LINE = 1;  // x, y
+    static final byte OP_CUBIC = 2;  // x1, y1, x2, y2, x, y
+    static final byte OP_QUAD = 3;  // x1, y1, x, y
+    static final byte OP_CLOSE = 4;
+
+    final byte[] ops;
+    final float[] coords;
+
+    PathData(byte[] ops, float[] coords) {
+        this.ops = ops;
+        this.coords = coords;
+    }
+
+}
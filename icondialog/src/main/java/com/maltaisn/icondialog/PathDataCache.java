@@ -0,0 +1,308 @@
+/*
+ * Copyright (c) 2018 Nicolas Maltais
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.maltaisn.icondialog;
+
+
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
+import android.util.Log;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * Cache of the parsed path data of icons, so that path data text is only parsed once.
+ * The cache can be persisted to a file so that it's kept between sessions. Since icons
+ * with the same ID can change, the hash of the path data text is kept with each entry.
+ */
+class PathDataCache implements ComponentCallbacks2 {
+
+    private static final String TAG = PathDataCache.class.getSimpleName();
+
+    private static final int FILE_MAGIC = 0x49434450;  // "ICDP"
+    private static final int FILE_VERSION = 1;
+
+    private final File file;
+    private final Object fileLock;
+    private boolean persistent;
+
+    private final SparseArray<PathData> pathData;
+    private final SparseIntArray pathHashes;
+    private boolean loaded;  // Whether entries of the file are in memory
+    private boolean loading;
+    private boolean changed;
+
+    /**
+     * Create a new path data cache
+     * @param cacheDir directory in which the cache file is saved
+     * @param catalogVersion version of the icon catalog format
+     */
+    PathDataCache(File cacheDir, int catalogVersion) {
+        file = new File(cacheDir, "icd_path_cache_" + catalogVersion + ".bin");
+        fileLock = new Object();
+        persistent = true;
+
+        pathData = new SparseArray<>();
+        pathHashes = new SparseIntArray();
+    }
+
+    /**
+     * Set whether the cache is saved to a file and loaded from it
+     */
+    synchronized void setPersistent(boolean persistent) {
+        this.persistent = persistent;
+        if (!persistent) {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+
+    /**
+     * Get the parsed path data of an icon, parsing it if not cached
+     * @param icon the icon
+     * @return the path data
+     * @throws IllegalArgumentException if icon path data is invalid
+     */
+    PathData get(Icon icon) {
+        synchronized (this) {
+            int index = pathData.indexOfKey(icon.id);
+            if (index >= 0 && pathHashes.get(icon.id) == icon.pathHash) {
+                return pathData.valueAt(index);
+            }
+        }
+
+        // Parse outside of lock so that many threads can parse at the same time
+        PathData data = PathParser.parse(icon.pathArena, icon.pathOffset, icon.pathLength);
+        synchronized (this) {
+            pathData.put(icon.id, data);
+            pathHashes.put(icon.id, icon.pathHash);
+            changed = true;
+        }
+        return data;
+    }
+
+    /**
+     * Get the hash of the path data of an icon, computed once when icon is loaded
+     * @param arena arena containing the icon path data
+     * @param offset offset of the path data in the arena
+     * @param length length of the path data
+     * @return the hash
+     */
+    static int getPathHash(byte[] arena, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(arena, offset, length);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Load cached path data from file if persistent and not loaded yet. Must only be called
+     * on background threads creating drawables, never when icons are shown. If another thread
+     * is already loading, returns immediately: {@link #get(Icon)} doesn't wait for the file
+     * and parses path data itself in the meantime. Entries parsed in the meantime are kept.
+     */
+    void load() {
+        synchronized (this) {
+            if (!persistent || loaded || loading) return;
+            loading = true;
+        }
+
+        SparseArray<PathData> data = new SparseArray<>();
+        SparseIntArray hashes = new SparseIntArray();
+        try {
+            synchronized (fileLock) {
+                readFromFile(data, hashes);
+            }
+        } finally {
+            synchronized (this) {
+                for (int i = 0; i < data.size(); i++) {
+                    int id = data.keyAt(i);
+                    if (pathData.indexOfKey(id) < 0) {
+                        pathData.put(id, data.valueAt(i));
+                        pathHashes.put(id, hashes.get(id));
+                    }
+                }
+                loaded = true;
+                loading = false;
+            }
+        }
+    }
+
+    /**
+     * Read cached path data from file, adding entries not already in the arrays.
+     * File is ignored if it's not valid.
+     */
+    private void readFromFile(SparseArray<PathData> data, SparseIntArray hashes) {
+        if (!file.exists()) return;
+
+        SparseArray<PathData> fileData = new SparseArray<>();
+        SparseIntArray fileHashes = new SparseIntArray();
+        try (FileInputStream in = new FileInputStream(file)) {
+            FileChannel channel = in.getChannel();
+            ByteBuffer bb = ByteBuffer.allocate((int) channel.size());
+            while (bb.hasRemaining() && channel.read(bb) != -1) {
+                // Read whole file
+            }
+            bb.flip();
+
+            if (bb.getInt() != FILE_MAGIC || bb.getInt() != FILE_VERSION) {
+                return;
+            }
+
+            int count = bb.getInt();
+            for (int i = 0; i < count; i++) {
+                int id = bb.getInt();
+                int hash = bb.getInt();
+                byte[] ops = new byte[bb.getInt()];
+                bb.get(ops);
+                float[] coords = new float[bb.getInt()];
+                bb.asFloatBuffer().get(coords);
+                bb.position(bb.position() + coords.length * 4);
+
+                fileData.put(id, new PathData(ops, coords));
+                fileHashes.put(id, hash);
+            }
+
+        } catch (IOException | BufferUnderflowException | NegativeArraySizeException e) {
+            Log.e(TAG, "Could not load path data cache.", e);
+            return;
+        }
+
+        for (int i = 0; i < fileData.size(); i++) {
+            int id = fileData.keyAt(i);
+            if (data.indexOfKey(id) < 0) {
+                data.put(id, fileData.valueAt(i));
+                hashes.put(id, fileHashes.get(id));
+            }
+        }
+    }
+
+    /**
+     * Free all path data kept in memory. Path data is parsed again when needed.
+     * Entries that weren't saved are lost, so this should be called after saving.
+     */
+    private synchronized void release() {
+        pathData.clear();
+        pathHashes.clear();
+        loaded = false;
+    }
+
+    /**
+     * Save cached path data to file if it changed since it was loaded or last saved.
+     * File is written to a temporary file first so that it's never left incomplete.
+     * Must be called while holding the file lock.
+     */
+    private void saveToFile() {
+        SparseArray<PathData> data;
+        SparseIntArray hashes;
+        boolean merge;
+        synchronized (this) {
+            if (!persistent || !changed) return;
+            data = pathData.clone();
+            hashes = pathHashes.clone();
+            merge = !loaded;
+            changed = false;
+        }
+        if (merge) {
+            // Entries of the file were released from memory, keep them
+            readFromFile(data, hashes);
+        }
+
+        File tempFile = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_VERSION);
+            out.writeInt(data.size());
+            for (int i = 0; i < data.size(); i++) {
+                PathData pd = data.valueAt(i);
+                out.writeInt(data.keyAt(i));
+                out.writeInt(hashes.get(data.keyAt(i)));
+                out.writeInt(pd.ops.length);
+                out.write(pd.ops);
+                out.writeInt(pd.coords.length);
+                for (float c : pd.coords) {
+                    out.writeFloat(c);
+                }
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Could not save path data cache.", e);
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
+            return;
+        }
+
+        if (!tempFile.renameTo(file)) {
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
+        }
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_UI_HIDDEN) {
+            // App UI was hidden, a good time to save cache before process is killed.
+            // If app is in background, path data is not needed anymore, free it once saved.
+            saveInBackground(level >= TRIM_MEMORY_BACKGROUND);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        saveInBackground(true);
+    }
+
+    /**
+     * Save cache on a low priority thread
+     * @param release whether to free path data kept in memory after saving
+     */
+    private void saveInBackground(final boolean release) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (fileLock) {
+                    saveToFile();
+                    if (release) {
+                        release();
+                    }
+                }
+            }
+        }, "iconPathCacheWriter");
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+        // Not used
+    }
+
+}
@@ -0,0 +1,474 @@
+/*
+ * Copyright (c) 2018 Nicolas Maltais
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.maltaisn.icondialog;
+
+
+import java.util.Arrays;
+
+/**
+ * Parser for SVG path data, creating {@link PathData} directly from the ASCII path data of an icon.
+ * All commands of the SVG path grammar are supported. Commands are converted to absolute
+ * moveto, lineto, cubic and quadratic curves and closepath, arcs are converted to cubic curves.
+ * See https://www.w3.org/TR/SVG/paths.html#PathDataBNF
+ */
+class PathParser {
+
+    private static final String TAG = PathParser.class.getSimpleName();
+
+    private final byte[] data;
+    private final int end;
+    private int pos;
+
+    private byte[] ops;
+    private int opsSize;
+    private float[] coords;
+    private int coordsSize;
+
+    // Current point, start of current subpath and last control point
+    private float x, y;
+    private float startX, startY;
+    private float ctrlX, ctrlY;
+
+    private PathParser(byte[] data, int offset, int length) {
+        this.data = data;
+        this.end = offset + length;
+        this.pos = offset;
+        ops = new byte[16];
+        coords = new float[64];
+    }
+
+    /**
+     * Parse path data
+     * @param data array containing the path data, in ASCII
+     * @param offset offset of path data in array
+     * @param length length of path data
+     * @return the parsed path data
+     * @throws IllegalArgumentException if path data is invalid
+     */
+    static PathData parse(byte[] data, int offset, int length) {
+        PathParser parser = new PathParser(data, offset, length);
+        parser.parsePath();
+        return new PathData(Arrays.copyOf(parser.ops, parser.opsSize),
+                Arrays.copyOf(parser.coords, parser.coordsSize));
+    }
+
+    private void parsePath() {
+        char lastCmd = 0;
+        skipSeparators();
+        while (pos < end) {
+            char cmd = (char) data[pos];
+            if (isCommand(cmd)) {
+                pos++;
+            } else if (lastCmd != 0 && lastCmd != 'Z' && lastCmd != 'z' && isNumberStart(cmd)) {
+                // Implicit command repetition, moveto is followed by implicit lineto
+                cmd = (lastCmd == 'M' ? 'L' : lastCmd == 'm' ? 'l' : lastCmd);
+            } else {
+                throw new IllegalArgumentException("Invalid path data at position " + pos + ".");
+            }
+
+            if (lastCmd == 0 && cmd != 'M' && cmd != 'm') {
+                throw new IllegalArgumentException("Path data must start with a moveto.");
+            }
+
+            parseCommand(cmd, lastCmd);
+            lastCmd = cmd;
+            skipSeparators();
+        }
+    }
+
+    private void parseCommand(char cmd, char lastCmd) {
+        boolean relative = Character.isLowerCase(cmd);
+        float dx = relative ? x : 0;
+        float dy = relative ? y : 0;
+        switch (cmd) {
+            case 'M':
+            case 'm':
+                x = readFloat() + dx;
+                y = readFloat() + dy;
+                startX = x;
+                startY = y;
+                moveTo(x, y);
+                ctrlX = x;
+                ctrlY = y;
+                break;
+
+            case 'L':
+            case 'l':
+                x = readFloat() + dx;
+                y = readFloat() + dy;
+                lineTo(x, y);
+                ctrlX = x;
+                ctrlY = y;
+                break;
+
+            case 'H':
+            case 'h':
+                x = readFloat() + dx;
+                lineTo(x, y);
+                ctrlX = x;
+                ctrlY = y;
+                break;
+
+            case 'V':
+            case 'v':
+                y = readFloat() + dy;
+                lineTo(x, y);
+                ctrlX = x;
+                ctrlY = y;
+                break;
+
+            case 'C':
+            case 'c': {
+                float x1 = readFloat() + dx;
+                float y1 = readFloat() + dy;
+                float x2 = readFloat() + dx;
+                float y2 = readFloat() + dy;
+                x = readFloat() + dx;
+                y = readFloat() + dy;
+                cubicTo(x1, y1, x2, y2, x, y);
+                ctrlX = x2;
+                ctrlY = y2;
+                break;
+            }
+
+            case 'S':
+            case 's': {
+                // First control point is reflection of last one if last command was a cubic curve
+                float x1 = x;
+                float y1 = y;
+                if ("CcSs".indexOf(lastCmd) != -1) {
+                    x1 = 2 * x - ctrlX;
+                    y1 = 2 * y - ctrlY;
+                }
+                float x2 = readFloat() + dx;
+                float y2 = readFloat() + dy;
+                x = readFloat() + dx;
+                y = readFloat() + dy;
+                cubicTo(x1, y1, x2, y2, x, y);
+                ctrlX = x2;
+                ctrlY = y2;
+                break;
+            }
+
+            case 'Q':
+            case 'q': {
+                float x1 = readFloat() + dx;
+                float y1 = readFloat() + dy;
+                x = readFloat() + dx;
+                y = readFloat() + dy;
+                quadTo(x1, y1, x, y);
+                ctrlX = x1;
+                ctrlY = y1;
+                break;
+            }
+
+            case 'T':
+            case 't': {
+                // Control point is reflection of last one if last command was a quadratic curve
+                float x1 = x;
+                float y1 = y;
+                if ("QqTt".indexOf(lastCmd) != -1) {
+                    x1 = 2 * x - ctrlX;
+                    y1 = 2 * y - ctrlY;
+                }
+                x = readFloat() + dx;
+                y = readFloat() + dy;
+                quadTo(x1, y1, x, y);
+                ctrlX = x1;
+                ctrlY = y1;
+                break;
+            }
+
+            case 'A':
+            case 'a': {
+                float rx = readFloat();
+                float ry = readFloat();
+                float rotation = readFloat();
+                boolean largeArc = readFlag();
+                boolean sweep = readFlag();
+                float x1 = readFloat() + dx;
+                float y1 = readFloat() + dy;
+                arcTo(x, y, rx, ry, rotation, largeArc, sweep, x1, y1);
+                x = x1;
+                y = y1;
+                ctrlX = x;
+                ctrlY = y;
+                break;
+            }
+
+            case 'Z':
+            case 'z':
+                close();
+                x = startX;
+                y = startY;
+                ctrlX = x;
+                ctrlY = y;
+                break;
+        }
+    }
+
+    private void moveTo(float x, float y) {
+        addOp(PathData.OP_MOVE);
+        addCoords(x, y);
+    }
+
+    private void lineTo(float x, float y) {
+        addOp(PathData.OP_LINE);
+        addCoords(x, y);
+    }
+
+    private void cubicTo(float x1, float y1, float x2, float y2, float x, float y) {
+        addOp(PathData.OP_CUBIC);
+        addCoords(x1, y1);
+        addCoords(x2, y2);
+        addCoords(x, y);
+    }
+
+    private void quadTo(float x1, float y1, float x, float y) {
+        addOp(PathData.OP_QUAD);
+        addCoords(x1, y1);
+        addCoords(x, y);
+    }
+
+    private void close() {
+        addOp(PathData.OP_CLOSE);
+    }
+
+    private void addOp(byte op) {
+        if (opsSize == ops.length) {
+            ops = Arrays.copyOf(ops, opsSize * 2);
+        }
+        ops[opsSize] = op;
+        opsSize++;
+    }
+
+    private void addCoords(float x, float y) {
+        if (coordsSize + 2 > coords.length) {
+            coords = Arrays.copyOf(coords, coords.length * 2);
+        }
+        coords[coordsSize] = x;
+        coords[coordsSize + 1] = y;
+        coordsSize += 2;
+    }
+
+    private static boolean isCommand(char c) {
+        return "MmLlHhVvCcSsQqTtAaZz".indexOf(c) != -1;
+    }
+
+    private static boolean isNumberStart(char c) {
+        return c >= '0' && c <= '9' || c == '-' || c == '+' || c == '.';
+    }
+
+    private void skipSeparators() {
+        while (pos < end) {
+            byte c = data[pos];
+            if (c == ' ' || c == ',' || c == '\t' || c == '\n' || c == '\r') {
+                pos++;
+            } else {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Read an arc flag, which is a single character that doesn't need to be separated
+     */
+    private boolean readFlag() {
+        skipSeparators();
+        if (pos < end) {
+            byte c = data[pos];
+            if (c == '0' || c == '1') {
+                pos++;
+                return c == '1';
+            }
+        }
+        throw new IllegalArgumentException("Expected arc flag at position " + pos + ".");
+    }
+
+    /**
+     * Read a number. A number ends at the first character that can't be part of it,
+     * so "1.5.5" is read as two numbers and "1-1" too.
+     */
+    private float readFloat() {
+        skipSeparators();
+        int start = pos;
+
+        boolean negative = false;
+        if (pos < end && (data[pos] == '-' || data[pos] == '+')) {
+            negative = data[pos] == '-';
+            pos++;
+        }
+
+        // Read mantissa digits as an integer, keeping track of decimal point position
+        long mantissa = 0;
+        int exponent = 0;
+        int digits = 0;
+        while (pos < end && data[pos] >= '0' && data[pos] <= '9') {
+            if (mantissa < Long.MAX_VALUE / 10) {
+                mantissa = mantissa * 10 + (data[pos] - '0');
+            } else {
+                exponent++;
+            }
+            pos++;
+            digits++;
+        }
+        if (pos < end && data[pos] == '.') {
+            pos++;
+            while (pos < end && data[pos] >= '0' && data[pos] <= '9') {
+                if (mantissa < Long.MAX_VALUE / 10) {
+                    mantissa = mantissa * 10 + (data[pos] - '0');
+                    exponent--;
+                }
+                pos++;
+                digits++;
+            }
+        }
+        if (digits == 0) {
+            throw new IllegalArgumentException("Expected number at position " + start + ".");
+        }
+
+        // Exponent, only if followed by digits
+        if (pos + 1 < end && (data[pos] == 'e' || data[pos] == 'E')) {
+            int expPos = pos + 1;
+            boolean expNegative = false;
+            if (data[expPos] == '-' || data[expPos] == '+') {
+                expNegative = data[expPos] == '-';
+                expPos++;
+            }
+            if (expPos < end && data[expPos] >= '0' && data[expPos] <= '9') {
+                int exp = 0;
+                while (expPos < end && data[expPos] >= '0' && data[expPos] <= '9') {
+                    exp = Math.min(exp * 10 + (data[expPos] - '0'), 1000);
+                    expPos++;
+                }
+                exponent += (expNegative ? -exp : exp);
+                pos = expPos;
+            }
+        }
+
+        double value = mantissa;
+        if (exponent != 0) {
+            value *= Math.pow(10, exponent);
+        }
+        return (float) (negative ? -value : value);
+    }
+
+    /**
+     * Add an elliptical arc to a path, converted to cubic curves.
+     * See https://www.w3.org/TR/SVG/implnote.html#ArcImplementationNotes
+     */
+    private void arcTo(float x0, float y0, float rx, float ry, float rotation,
+                       boolean largeArc, boolean sweep, float x, float y) {
+        if (x0 == x && y0 == y) {
+            // Endpoints are identical, arc is omitted
+            return;
+        }
+        if (rx == 0 || ry == 0) {
+            // Arc is a straight line
+            lineTo(x, y);
+            return;
+        }
+
+        double rX = Math.abs(rx);
+        double rY = Math.abs(ry);
+        double phi = Math.toRadians(rotation);
+        double cosPhi = Math.cos(phi);
+        double sinPhi = Math.sin(phi);
+
+        // Compute endpoint in the coordinate system of the ellipse
+        double dx2 = (x0 - x) / 2.0;
+        double dy2 = (y0 - y) / 2.0;
+        double x1p = cosPhi * dx2 + sinPhi * dy2;
+        double y1p = -sinPhi * dx2 + cosPhi * dy2;
+
+        // Scale up radii if they are too small to join the endpoints
+        double lambda = (x1p * x1p) / (rX * rX) + (y1p * y1p) / (rY * rY);
+        if (lambda > 1) {
+            double scale = Math.sqrt(lambda);
+            rX *= scale;
+            rY *= scale;
+        }
+
+        // Compute center
+        double rx2 = rX * rX;
+        double ry2 = rY * rY;
+        double num = rx2 * ry2 - rx2 * y1p * y1p - ry2 * x1p * x1p;
+        double den = rx2 * y1p * y1p + ry2 * x1p * x1p;
+        double coef = Math.sqrt(Math.max(0, num / den));
+        if (largeArc == sweep) coef = -coef;
+        double cxp = coef * rX * y1p / rY;
+        double cyp = -coef * rY * x1p / rX;
+        double cx = cosPhi * cxp - sinPhi * cyp + (x0 + x) / 2.0;
+        double cy = sinPhi * cxp + cosPhi * cyp + (y0 + y) / 2.0;
+
+        // Compute start angle and sweep angle
+        double ux = (x1p - cxp) / rX;
+        double uy = (y1p - cyp) / rY;
+        double vx = (-x1p - cxp) / rX;
+        double vy = (-y1p - cyp) / rY;
+        double theta = Math.atan2(uy, ux);
+        double dTheta = Math.atan2(ux * vy - uy * vx, ux * vx + uy * vy);
+        if (!sweep && dTheta > 0) {
+            dTheta -= 2 * Math.PI;
+        } else if (sweep && dTheta < 0) {
+            dTheta += 2 * Math.PI;
+        }
+
+        // Approximate arc with a cubic curve for each quarter of ellipse or less
+        int segments = (int) Math.ceil(Math.abs(dTheta) / (Math.PI / 2) - 0.001);
+        if (segments < 1) segments = 1;
+        double delta = dTheta / segments;
+        double t = 4.0 / 3.0 * Math.tan(delta / 4);
+
+        double cosTheta = Math.cos(theta);
+        double sinTheta = Math.sin(theta);
+        double startX = x0;
+        double startY = y0;
+        double derivX = -rX * cosPhi * sinTheta - rY * sinPhi * cosTheta;
+        double derivY = -rX * sinPhi * sinTheta + rY * cosPhi * cosTheta;
+        for (int i = 0; i < segments; i++) {
+            theta += delta;
+            cosTheta = Math.cos(theta);
+            sinTheta = Math.sin(theta);
+
+            double endX = cx + rX * cosPhi * cosTheta - rY * sinPhi * sinTheta;
+            double endY = cy + rX * sinPhi * cosTheta + rY * cosPhi * sinTheta;
+            double endDerivX = -rX * cosPhi * sinTheta - rY * sinPhi * cosTheta;
+            double endDerivY = -rX * sinPhi * sinTheta + rY * cosPhi * cosTheta;
+            if (i == segments - 1) {
+                // Use exact endpoint to avoid rounding errors
+                endX = x;
+                endY = y;
+            }
+
+            cubicTo((float) (startX + t * derivX), (float) (startY + t * derivY),
+                    (float) (endX - t * endDerivX), (float) (endY - t * endDerivY),
+                    (float) endX, (float) endY);
+
+            startX = endX;
+            startY = endY;
+            derivX = endDerivX;
+            derivY = endDerivY;
+        }
+    }
+
+}
@@ -41,6 +41,12 @@ class StickyHeaderDecoration extends RecyclerView.ItemDecoration {
     private RecyclerView.ViewHolder headerViewHolder;
     private int stickyHeaderHeight;
 
+    // Bottom of the sticky header when last drawn, 0 if it wasn't drawn
+    private int stickyHeaderBottom;
+
+    // Position of the header bound to the sticky header view holder
+    private int boundHeaderPos;
+
     StickyHeaderDecoration(RecyclerView parent, @NonNull StickyHeaderImpl impl) {
         stickyHeaderImpl = impl;
 
@@ -48,21 +54,60 @@ class StickyHeaderDecoration extends RecyclerView.ItemDecoration {
             public boolean onInterceptTouchEvent(RecyclerView recyclerView, MotionEvent motionEvent) {
                 // Intercept click if it's on sticky header, doesn't intercept scrolling event
                 return motionEvent.getAction() == MotionEvent.ACTION_DOWN
-                        && motionEvent.getY() <= stickyHeaderHeight;
+                        && motionEvent.getY() < stickyHeaderBottom;
             }
 
-            public void onTouchEvent(RecyclerView recyclerView, MotionEvent motionEvent) {}
+            public void onTouchEvent(RecyclerView recyclerView, MotionEvent motionEvent) {
+                // Sticky header view isn't attached so it can't be clicked, notify the adapter
+                // of the click on the header it's bound to instead.
+                if (motionEvent.getAction() == MotionEvent.ACTION_UP
+                        && motionEvent.getY() < stickyHeaderBottom
+                        && boundHeaderPos != RecyclerView.NO_POSITION) {
+                    stickyHeaderImpl.onHeaderClicked(boundHeaderPos);
+                }
+            }
 
             public void onRequestDisallowInterceptTouchEvent(boolean disallowIntercept) {}
         });
 
+        // Sticky header must be bound again if the header at its position changes
+        parent.getAdapter().registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onChanged() {
+                boundHeaderPos = RecyclerView.NO_POSITION;
+            }
+
+            @Override
+            public void onItemRangeChanged(int positionStart, int itemCount) {
+                boundHeaderPos = RecyclerView.NO_POSITION;
+            }
+
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                boundHeaderPos = RecyclerView.NO_POSITION;
+            }
+
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount) {
+                boundHeaderPos = RecyclerView.NO_POSITION;
+            }
+
+            @Override
+            public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+                boundHeaderPos = RecyclerView.NO_POSITION;
+            }
+        });
+
         stickyHeaderHeight = -1;
+        boundHeaderPos = RecyclerView.NO_POSITION;
     }
 
     @Override
     public void onDrawOver(Canvas c, RecyclerView parent, RecyclerView.State state) {
         super.onDrawOver(c, parent, state);
 
+        stickyHeaderBottom = 0;
+
         View topChild = parent.getChildAt(0);
         if (topChild == null) {
             // Empty list
@@ -75,42 +120,48 @@ class StickyHeaderDecoration extends RecyclerView.ItemDecoration {
             return;
         }
 
-        setHeaderViewHolder(topChildPosition, parent);
-
-        View childInContact = getChildInContact(parent, headerViewHolder.itemView);
-        if (childInContact != null) {
-            int childInContactPos = parent.getChildAdapterPosition(childInContact);
-            if (childInContactPos != RecyclerView.NO_POSITION && stickyHeaderImpl.isHeader(childInContactPos)) {
-                if (childInContactPos == 0) {
-                    // Don't draw pushed header for first header
-                    return;
-                }
+        int headerPos = stickyHeaderImpl.getHeaderPositionForItem(topChildPosition);
+        if (headerPos == -1) {
+            // Top item has no header
+            return;
+        }
 
-                // If item in contact is another header, draw translated header to create push effect
+        setHeaderViewHolder(headerPos, parent);
+        View header = headerViewHolder.itemView;
+
+        // Only the next header can be in contact with the sticky header.
+        // Layout manager finds its view directly from its position.
+        int nextHeaderPos = stickyHeaderImpl.getNextHeaderPosition(headerPos);
+        if (nextHeaderPos != -1) {
+            View nextHeader = parent.getLayoutManager().findViewByPosition(nextHeaderPos);
+            if (nextHeader != null && nextHeader.getTop() > header.getTop()
+                    && nextHeader.getTop() <= header.getBottom()) {
+                // If next header is in contact, draw translated header to create push effect
                 c.save();
-                c.translate(0, childInContact.getTop() - headerViewHolder.itemView.getHeight());
-                headerViewHolder.itemView.draw(c);
+                c.translate(0, nextHeader.getTop() - header.getHeight());
+                header.draw(c);
                 c.restore();
+                stickyHeaderBottom = nextHeader.getTop();
                 return;
             }
         }
 
         // Draw header on top
-        c.save();
-        c.translate(0, 0);
-        headerViewHolder.itemView.draw(c);
-        c.restore();
+        header.draw(c);
+        stickyHeaderBottom = stickyHeaderHeight;
     }
 
-    private void setHeaderViewHolder(int position, View parent) {
+    private void setHeaderViewHolder(int headerPos, View parent) {
         if (headerViewHolder == null) {
             // Header view holder was not yet created
             headerViewHolder = stickyHeaderImpl.onCreateHeaderViewHolder();
         }
 
-        // Bind sticky header view holder data
-        int headerPos = stickyHeaderImpl.getHeaderPositionForItem(position);
-        stickyHeaderImpl.onBindHeaderViewHolder(headerViewHolder, headerPos);
+        // Bind sticky header view holder data only if header changed
+        if (headerPos != boundHeaderPos) {
+            stickyHeaderImpl.onBindHeaderViewHolder(headerViewHolder, headerPos);
+            boundHeaderPos = headerPos;
+        }
 
         if (stickyHeaderHeight == -1) {
             // Measure parent RecyclerView
@@ -130,32 +181,20 @@ class StickyHeaderDecoration extends RecyclerView.ItemDecoration {
         }
     }
 
-    private static View getChildInContact(RecyclerView parent, View with) {
-        // Get first child in contact with sticky header
-        for (int i = 0; i < parent.getChildCount(); i++) {
-            View child = parent.getChildAt(i);
-            if (child.getTop() > with.getTop() && child.getTop() <= with.getBottom()) {
-                // This child overlaps the contact point
-                return child;
-            }
-        }
-        return null;
-    }
-
     interface StickyHeaderImpl {
         /**
-         * Whether item at position is a header item or not
+         * Get the header for the item at a position
          * @param position item position
-         * @return true if it is
+         * @return header position for that item, -1 if it has none
          */
-        boolean isHeader(int position);
+        int getHeaderPositionForItem(int position);
 
         /**
-         * Get the header for the item at a position
+         * Get the first header after the item at a position
          * @param position item position
-         * @return header position for that item
+         * @return position of the next header, -1 if there is none
          */
-        int getHeaderPositionForItem(int position);
+        int getNextHeaderPosition(int position);
 
         /**
          * Get the sticky header view holder
@@ -169,5 +208,11 @@ class StickyHeaderDecoration extends RecyclerView.ItemDecoration {
          * @param position header item position
          */
         void onBindHeaderViewHolder(RecyclerView.ViewHolder viewHolder, int position);
+
+        /**
+         * Called when the sticky header is clicked
+         * @param position position of the header item it's bound to
+         */
+        void onHeaderClicked(int position);
     }
 }
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2018 Nicolas Maltais
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.maltaisn.icondialog;
+
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+ * Normalization of label values and search terms. The same normalization must be used for
+ * label values, when they are indexed, and for search terms, so that a search matches the same
+ * icons whichever way it's done. This class has no Android dependency, it's also used at build
+ * time to prenormalize label values, see icon-catalog.gradle.
+ */
+final class TextNormalizer {
+
+    private static final String TAG = TextNormalizer.class.getSimpleName();
+
+    private TextNormalizer() {
+        // No instances
+    }
+
+    /**
+     * Normalize given text, removing all diacritics, all
+     * unicode characters, hyphens, apostrophes and more
+     * @param text text
+     * @return normalized text, only containing [a-z0-9]
+     */
+    static String normalize(String text) {
+        // NOTE: Might have to change this method if more translations are made
+        // For example, right now it would remove all chinese and arabic characters
+        String normalized = Normalizer.normalize(text.toLowerCase(Locale.ROOT), Normalizer.Form.NFKD);
+        StringBuilder sb = new StringBuilder(normalized.length());
+        for (int i = 0; i < normalized.length(); i++) {
+            char c = normalized.charAt(i);
+            if (c >= 'a' && c <= 'z' || c >= '0' && c <= '9') {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+}